@@ -0,0 +1,39 @@
+package ticketmachine.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ticketmachine.util.BarcodeMatrix;
+import ticketmachine.util.Code128;
+import ticketmachine.util.QrCode;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BarcodeBenchmark {
+    
+    @Param({"PK3Q8ZK1W2M0P1", "PK3Q8ZK1W2M0P1-LHR-KHI-20261017-0830-BUSINESS-12C"})
+    private String text;
+    
+    @Benchmark
+    public BarcodeMatrix code128() {
+        return Code128.encode(text);
+    }
+    
+    @Benchmark
+    public BarcodeMatrix qrMedium() {
+        return QrCode.encode(text, QrCode.ErrorCorrection.MEDIUM);
+    }
+}
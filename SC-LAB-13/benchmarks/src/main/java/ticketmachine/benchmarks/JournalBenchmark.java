@@ -0,0 +1,113 @@
+package ticketmachine.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ticketmachine.model.Destination;
+import ticketmachine.model.PurchaseJournal;
+import ticketmachine.model.SeatInventory;
+import ticketmachine.model.Ticket;
+import ticketmachine.model.TicketType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+// Eight appenders on one journal, with and without group commit. The score is appends/s across all of
+// them; appends per fsync is the appends counter divided by the fsyncs counter.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+public class JournalBenchmark {
+    
+    @Param({"true", "false"})
+    private boolean groupCommit;
+    
+    private Path directory;
+    private PurchaseJournal journal;
+    private long appendsAtStart;
+    private long syncsAtStart;
+    private final AtomicBoolean reported = new AtomicBoolean();
+    
+    @Setup(Level.Trial)
+    public void openJournal() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = new PurchaseJournal(directory, PurchaseJournal.DEFAULT_SEGMENT_BYTES, groupCommit);
+    }
+    
+    @TearDown(Level.Trial)
+    public void closeJournal() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+    
+    @Setup(Level.Iteration)
+    public void snapshotCounters() {
+        appendsAtStart = journal.getAppendCount();
+        syncsAtStart = journal.getSyncCount();
+        reported.set(false);
+    }
+    
+    @State(Scope.Thread)
+    public static class Appender {
+        
+        private Ticket ticket;
+        
+        @Setup
+        public void setUp() {
+            ticket = new Ticket(1L << 40, TicketType.TRAIN, "Lahore", new Destination("Karachi", 1211),
+                    2, "Business", 5450.0, new SeatInventory());
+        }
+    }
+    
+    // The journal's own counters over the iteration, reported once so threads do not add them up
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class JournalCounters {
+        
+        public long appends;
+        public long fsyncs;
+        
+        @TearDown(Level.Iteration)
+        public void report(JournalBenchmark benchmark) {
+            if (benchmark.reported.compareAndSet(false, true)) {
+                appends = benchmark.journal.getAppendCount() - benchmark.appendsAtStart;
+                fsyncs = benchmark.journal.getSyncCount() - benchmark.syncsAtStart;
+            }
+        }
+    }
+    
+    @Benchmark
+    public void append(Appender appender, JournalCounters counters) {
+        journal.append(appender.ticket);
+    }
+}
@@ -0,0 +1,97 @@
+package ticketmachine.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ticketmachine.model.Departure;
+import ticketmachine.model.DepartureKey;
+import ticketmachine.model.DeparturePeriod;
+import ticketmachine.model.Destination;
+import ticketmachine.model.Itinerary;
+import ticketmachine.model.SeatInventory;
+import ticketmachine.model.Ticket;
+import ticketmachine.model.TicketMachine;
+import ticketmachine.model.TicketSession;
+import ticketmachine.model.TicketType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc to see allocation per operation next to latency.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ModelBenchmark {
+    
+    private Destination destination;
+    private TicketMachine machine;
+    private TicketSession session;
+    private SeatInventory seats;
+    private double amount;
+    private LocalDateTime searchTime;
+    
+    @Setup
+    public void setup() {
+        destination = new Destination("Karachi", 1211);
+        machine = new TicketMachine(null, 0);
+        session = machine.openSession();
+        session.selectTicketType(TicketType.TRAIN);
+        session.selectOrigin("Lahore");
+        session.selectDestination(machine.getTrainDestinations().get(0));
+        session.selectClass("Business");
+        seats = new SeatInventory();
+        amount = 5450.0;
+        searchTime = LocalDateTime.of(2026, 1, 15, 6, 0);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        machine.close();
+    }
+    
+    @Benchmark
+    public double calculatePrice() {
+        return destination.calculatePrice(TicketType.TRAIN);
+    }
+    
+    @Benchmark
+    public double getPricePerTicket() {
+        return session.getPricePerTicket();
+    }
+    
+    // Seats go back after each ticket so the departure never sells out; the release is part of the cost
+    @Benchmark
+    public Ticket newTicket() {
+        Ticket ticket = new Ticket(1L << 40, TicketType.TRAIN, "Lahore", destination, 2, "Business", amount, seats);
+        seats.release(DepartureKey.of(ticket), ticket.getSeatIndexes());
+        return ticket;
+    }
+    
+    // Whole-day search from early morning, the largest result set a kiosk shows for one route
+    @Benchmark
+    public List<Departure> findDepartures() {
+        return session.findDepartures(DeparturePeriod.ALL, searchTime);
+    }
+    
+    @Benchmark
+    public List<Itinerary> planJourney() {
+        return machine.getJourneyPlanner().plan("Karachi", "Sialkot", "Economy", 2, searchTime);
+    }
+    
+    @Benchmark
+    public String formatPKR() {
+        return Destination.formatPKR(amount);
+    }
+}
@@ -0,0 +1,93 @@
+package ticketmachine.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ticketmachine.model.Destination;
+import ticketmachine.model.SeatInventory;
+import ticketmachine.model.Ticket;
+import ticketmachine.model.TicketType;
+import ticketmachine.util.PdfGenerator;
+import ticketmachine.util.PdfOptions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+// Writes into a counting channel so the numbers reflect rendering and
+// compression rather than the disk. The document size for each mode is
+// printed once per trial.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PdfBenchmark {
+    
+    @Param({"1", "10"})
+    private int passengers;
+    
+    @Param({"uncompressed", "flate-1", "flate-6", "flate-9", "objstm-6"})
+    private String mode;
+    
+    private Ticket ticket;
+    private PdfOptions options;
+    private final CountingChannel channel = new CountingChannel();
+    
+    @Setup
+    public void setup() throws IOException {
+        ticket = new Ticket(1L << 40, TicketType.TRAIN, "Lahore", new Destination("Karachi", 1211),
+                passengers, "Business", 5450.0, new SeatInventory());
+        options = switch (mode) {
+            case "uncompressed" -> PdfOptions.UNCOMPRESSED;
+            case "flate-1" -> PdfOptions.compressed(Deflater.BEST_SPEED, false);
+            case "flate-6" -> PdfOptions.compressed(6, false);
+            case "flate-9" -> PdfOptions.compressed(Deflater.BEST_COMPRESSION, false);
+            case "objstm-6" -> PdfOptions.compressed(6, true);
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        };
+        channel.bytes = 0;
+        PdfGenerator.generateTicketPdf(ticket, channel, options);
+        System.out.printf("%n%s, %d passenger(s): %d bytes%n", options, passengers, channel.bytes);
+    }
+    
+    @Benchmark
+    public long generate() throws IOException {
+        channel.bytes = 0;
+        PdfGenerator.generateTicketPdf(ticket, channel, options);
+        return channel.bytes;
+    }
+    
+    private static final class CountingChannel implements WritableByteChannel {
+        
+        long bytes;
+        
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            bytes += written;
+            return written;
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ticketmachine.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ticketmachine.model.Destination;
+import ticketmachine.model.SeatInventory;
+import ticketmachine.model.Ticket;
+import ticketmachine.model.TicketType;
+import ticketmachine.util.ReceiptTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc to compare allocation per receipt as well as latency.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReceiptBenchmark {
+    
+    @Param({"1", "4", "10"})
+    private int passengers;
+    
+    private Ticket ticket;
+    private CharBuffer chars;
+    private ByteBuffer bytes;
+    
+    @Setup
+    public void setup() {
+        ticket = new Ticket(1L << 40, TicketType.TRAIN, "Lahore", new Destination("Karachi", 1211),
+                passengers, "Business", 5450.0, new SeatInventory());
+        chars = CharBuffer.allocate(2048);
+        bytes = ByteBuffer.allocateDirect(2048);
+    }
+    
+    @Benchmark
+    public String generateReceipt() {
+        return ticket.generateReceipt();
+    }
+    
+    @Benchmark
+    public CharBuffer templateToCharBuffer() {
+        chars.clear();
+        ReceiptTemplate.BOARDING_PASS.render(ticket, chars);
+        return chars;
+    }
+    
+    @Benchmark
+    public ByteBuffer templateToByteBuffer() {
+        bytes.clear();
+        ReceiptTemplate.BOARDING_PASS.render(ticket, bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,80 @@
+package ticketmachine.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ticketmachine.model.Destination;
+import ticketmachine.model.SeatInventory;
+import ticketmachine.model.SignedPass;
+import ticketmachine.model.Ticket;
+import ticketmachine.model.TicketSigner;
+import ticketmachine.model.TicketType;
+import ticketmachine.model.TicketVerifier;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SignatureBenchmark {
+    
+    private static final int BATCH = 1024;
+    
+    @Param({"1", "4"})
+    private int parallelism;
+    
+    private TicketSigner signer;
+    private TicketVerifier verifier;
+    private Ticket ticket;
+    private byte[] signedPass;
+    private byte[][] batch;
+    private SignedPass[] results;
+    
+    @Setup
+    public void setUp() {
+        signer = TicketSigner.generate();
+        verifier = signer.newVerifier(parallelism);
+        ticket = new Ticket(1L << 40, TicketType.TRAIN, "Lahore", new Destination("Karachi", 1211),
+                4, "Business", 5450.0, new SeatInventory());
+        signedPass = signer.sign(ticket, 1);
+        batch = new byte[BATCH][];
+        for (int i = 0; i < BATCH; i++) {
+            batch[i] = signer.sign(ticket, 1 + i % ticket.getQuantity());
+        }
+        results = new SignedPass[BATCH];
+    }
+    
+    @TearDown
+    public void tearDown() {
+        verifier.close();
+    }
+    
+    @Benchmark
+    public byte[] sign() {
+        return signer.sign(ticket, 1);
+    }
+    
+    @Benchmark
+    public SignedPass verify() {
+        return verifier.verify(signedPass);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int verifyBatch() {
+        return verifier.verifyBatch(batch, results);
+    }
+}
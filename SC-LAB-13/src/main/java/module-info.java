@@ -2,12 +2,14 @@ module ticketmachine {
     requires javafx.controls;
     requires javafx.graphics;
     requires javafx.base;
+    requires jdk.jfr;
     
     exports ticketmachine;
     exports ticketmachine.model;
     exports ticketmachine.view;
     exports ticketmachine.controller;
     exports ticketmachine.util;
+    exports ticketmachine.diagnostics;
     
     opens ticketmachine to javafx.graphics;
     opens ticketmachine.model to javafx.base;
@@ -0,0 +1,487 @@
+package ticketmachine;
+
+import ticketmachine.model.Departure;
+import ticketmachine.model.DepartureKey;
+import ticketmachine.model.DeparturePeriod;
+import ticketmachine.model.Destination;
+import ticketmachine.model.Itinerary;
+import ticketmachine.model.Ticket;
+import ticketmachine.model.TicketMachine;
+import ticketmachine.model.TicketSession;
+import ticketmachine.model.TicketType;
+import ticketmachine.util.PdfGenerator;
+import ticketmachine.util.PdfOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+// Headless load driver: runs select -> search -> pick a departure -> pay -> completePurchase() -> PDF
+// without JavaFX. Each route is only booked on the ticket types that serve it.
+//
+//   java -cp target/classes ticketmachine.KioskDriver --count=20000 --threads=4 --rate=500
+//        --types=train:70,bus:30 --passengers=1:60,2:25,4:15 --classes=Economy:80,Business:20
+//        --routes=Lahore>Karachi:5,Lahore>Multan:2 --pdf=discard
+//
+//   java -cp target/classes ticketmachine.KioskDriver --script=bookings.csv --pdf=out/
+//
+// Script lines are "type,origin,destination,passengers,class"; blank lines and # comments are skipped.
+public class KioskDriver {
+    
+    private static final double[] NOTES = {5000, 1000, 500, 100};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    
+    private final TicketMachine machine;
+    private final List<Booking> script;
+    private final WeightedChoice<TicketType> types;
+    private final WeightedChoice<Integer> passengers;
+    private final WeightedChoice<String> classes;
+    private final Map<TicketType, WeightedChoice<String[]>> routes;
+    private final String pdfTarget;
+    private final PdfOptions pdfOptions;
+    private final boolean keepSeats;
+    private final long seed;
+    
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder pdfBytes = new LongAdder();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private long[] purchaseNanos;
+    private long[] pdfNanos;
+    private long[] totalNanos;
+    
+    private KioskDriver(TicketMachine machine, Map<String, String> options) throws IOException {
+        this.machine = machine;
+        this.script = options.containsKey("script") ? readScript(Paths.get(options.get("script"))) : null;
+        this.types = WeightedChoice.parse(options.getOrDefault("types", "train:1,bus:1"), KioskDriver::parseType);
+        this.passengers = WeightedChoice.parse(options.getOrDefault("passengers", "1:1"), Integer::valueOf);
+        this.classes = WeightedChoice.parse(options.getOrDefault("classes", uniform(machine.getTravelClasses())),
+                String::valueOf);
+        this.routes = options.containsKey("routes")
+                ? routesByType(WeightedChoice.parse(options.get("routes"), KioskDriver::parseRoute))
+                : null;
+        this.pdfTarget = options.getOrDefault("pdf", "none");
+        this.pdfOptions = "compressed".equalsIgnoreCase(options.get("pdf-options"))
+                ? PdfOptions.COMPRESSED
+                : PdfOptions.UNCOMPRESSED;
+        this.keepSeats = options.containsKey("keep-seats");
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        
+        if (!"none".equals(pdfTarget) && !"discard".equals(pdfTarget)) {
+            Files.createDirectories(Paths.get(pdfTarget));
+        }
+    }
+    
+    private Map<TicketType, WeightedChoice<String[]>> routesByType(WeightedChoice<String[]> mix) {
+        Map<TicketType, WeightedChoice<String[]>> byType = new EnumMap<>(TicketType.class);
+        for (TicketType type : types.values) {
+            WeightedChoice<String[]> served = mix.filter(route -> findDestination(type, route[1]) != null);
+            if (served == null) {
+                throw new IllegalArgumentException(type + " serves none of the given routes");
+            }
+            byType.put(type, served);
+        }
+        for (String[] route : mix.values) {
+            boolean served = false;
+            for (WeightedChoice<String[]> choice : byType.values()) {
+                served |= choice.values.contains(route);
+            }
+            if (!served) {
+                throw new IllegalArgumentException("No ticket type in the mix serves " + route[0] + " > " + route[1]);
+            }
+        }
+        return byType;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options.containsKey("help")) {
+            System.out.println("Options: --count=N --warmup=N --threads=N --rate=PER_SECOND --script=FILE"
+                    + " --types=train:W,bus:W --passengers=N:W,... --classes=NAME:W,... --routes=FROM>TO:W,..."
+                    + " --pdf=none|discard|DIR --pdf-options=uncompressed|compressed --data-dir=DIR"
+                    + " --keep-seats --seed=N");
+            return;
+        }
+        Path dataDirectory = options.containsKey("data-dir") ? Paths.get(options.get("data-dir")) : null;
+        int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "0"));
+        
+        boolean failed;
+        try (TicketMachine machine = new TicketMachine(dataDirectory, 0)) {
+            KioskDriver driver = new KioskDriver(machine, options);
+            int count = Integer.parseInt(options.getOrDefault("count",
+                    String.valueOf(driver.script != null ? driver.script.size() : 10_000)));
+            if (warmup > 0) {
+                driver.run(warmup, threads, rate);
+                driver.reset();
+            }
+            long elapsed = driver.run(count, threads, rate);
+            driver.report(count, threads, rate, elapsed);
+            failed = !driver.failures.isEmpty();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+    
+    private void reset() {
+        next.set(0);
+        passes.reset();
+        pdfBytes.reset();
+        failures.clear();
+    }
+    
+    private long run(int count, int threads, double rate) throws InterruptedException {
+        purchaseNanos = new long[count];
+        pdfNanos = new long[count];
+        totalNanos = new long[count];
+        Arrays.fill(totalNanos, -1);
+        // Open-loop pacing: latency is measured from each booking's scheduled start, so a stalled
+        // purchase is charged for the queue it causes instead of silently lowering the offered load
+        long interval = rate > 0 ? (long) (1_000_000_000L / rate) : 0;
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(seed + t);
+            workers[t] = new Thread(() -> work(count, start, interval, random), "kiosk-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private void work(int count, long start, long interval, SplittableRandom random) {
+        TicketSession session = machine.openSession();
+        for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+            long scheduled = start + i * interval;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Booking booking = script != null ? script.get(i % script.size()) : randomBooking(random);
+            try {
+                long begin = interval > 0 ? scheduled : System.nanoTime();
+                Ticket ticket = purchase(session, booking, random);
+                long purchased = System.nanoTime();
+                writePdf(ticket, i);
+                long done = System.nanoTime();
+                purchaseNanos[i] = purchased - begin;
+                pdfNanos[i] = done - purchased;
+                totalNanos[i] = done - begin;
+                passes.add(ticket.getQuantity());
+                if (!keepSeats) {
+                    machine.getSeatInventory().release(DepartureKey.of(ticket), ticket.getSeatIndexes());
+                }
+            } catch (IOException | RuntimeException e) {
+                session.cancelTransaction();
+                failures.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(),
+                        k -> new LongAdder()).increment();
+            }
+        }
+    }
+    
+    private Ticket purchase(TicketSession session, Booking booking, SplittableRandom random) {
+        session.resetTransaction();
+        session.selectTicketType(booking.type);
+        session.selectOrigin(booking.origin);
+        Destination destination = findDestination(booking.type, booking.destination);
+        if (destination == null) {
+            throw new IllegalArgumentException(booking.type + " does not serve " + booking.destination);
+        }
+        session.selectDestination(destination);
+        session.setPassengerCount(booking.passengers);
+        session.selectClass(booking.travelClass);
+        
+        // Search and pick a direct departure the way the results page does, so the timetable and
+        // planner are exercised and the seat is taken on the departure the passenger chose
+        List<Departure> departures = new ArrayList<>();
+        for (Itinerary itinerary : session.findItineraries(DeparturePeriod.ALL)) {
+            Departure departure = itinerary.getFirstLeg();
+            if (itinerary.isDirect() && departure.getSeatsAvailable() >= booking.passengers) {
+                departures.add(departure);
+            }
+        }
+        if (departures.isEmpty()) {
+            throw new IllegalStateException("No departure with seats for " + booking);
+        }
+        session.selectDeparture(departures.get(random.nextInt(departures.size())));
+        
+        double remaining = session.getRemainingAmount();
+        while (remaining > 0) {
+            double note = NOTES[NOTES.length - 1];
+            for (double candidate : NOTES) {
+                if (candidate <= remaining) {
+                    note = candidate;
+                    break;
+                }
+            }
+            session.insertMoney(note);
+            remaining = session.getRemainingAmount();
+        }
+        return session.completePurchase();
+    }
+    
+    private void writePdf(Ticket ticket, int index) throws IOException {
+        if ("none".equals(pdfTarget)) {
+            return;
+        }
+        if ("discard".equals(pdfTarget)) {
+            CountingChannel channel = new CountingChannel();
+            PdfGenerator.generateTicketPdf(ticket, channel, pdfOptions);
+            pdfBytes.add(channel.count);
+        } else {
+            File file = Paths.get(pdfTarget, "ticket-" + index + "-" + ticket.getTicketId() + ".pdf").toFile();
+            PdfGenerator.generateTicketPdf(ticket, file, pdfOptions);
+            pdfBytes.add(file.length());
+        }
+    }
+    
+    private Booking randomBooking(SplittableRandom random) {
+        TicketType type = types.pick(random);
+        String origin;
+        String destination;
+        if (routes != null) {
+            String[] route = routes.get(type).pick(random);
+            origin = route[0];
+            destination = route[1];
+        } else {
+            List<String> origins = machine.getOriginStations();
+            List<Destination> destinations = machine.getDestinationsForType(type);
+            origin = origins.get(random.nextInt(origins.size()));
+            int index = random.nextInt(destinations.size());
+            if (destinations.get(index).getName().equals(origin)) {
+                index = (index + 1) % destinations.size();
+            }
+            destination = destinations.get(index).getName();
+        }
+        return new Booking(type, origin, destination, passengers.pick(random), classes.pick(random));
+    }
+    
+    private Destination findDestination(TicketType type, String name) {
+        for (Destination destination : machine.getDestinationsForType(type)) {
+            if (destination.getName().equalsIgnoreCase(name)) {
+                return destination;
+            }
+        }
+        return null;
+    }
+    
+    private void report(int count, int threads, double rate, long elapsedNanos) {
+        int completed = 0;
+        for (long nanos : totalNanos) {
+            if (nanos >= 0) completed++;
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "Completed %d of %d purchases in %.3f s on %d thread(s)%s%n",
+                completed, count, seconds, threads,
+                rate > 0 ? String.format(Locale.ROOT, " at a target of %.1f/s", rate) : "");
+        System.out.printf(Locale.ROOT, "Throughput: %.1f purchases/s, %.1f passes/s%n",
+                completed / seconds, passes.sum() / seconds);
+        if (!"none".equals(pdfTarget)) {
+            System.out.printf(Locale.ROOT, "PDF output: %d bytes (%s)%n", pdfBytes.sum(), pdfOptions);
+        }
+        
+        System.out.printf(Locale.ROOT, "%-12s%10s%10s%10s%10s%10s%n", "Latency (us)", "p50", "p90", "p99", "p99.9", "max");
+        printPercentiles("purchase", purchaseNanos);
+        if (!"none".equals(pdfTarget)) {
+            printPercentiles("pdf", pdfNanos);
+        }
+        printPercentiles("total", totalNanos);
+        
+        if (!failures.isEmpty()) {
+            System.out.println("Failures:");
+            failures.forEach((reason, counter) -> System.out.printf("  %6d  %s%n", counter.sum(), reason));
+        }
+    }
+    
+    private void printPercentiles(String label, long[] samples) {
+        long[] sorted = new long[samples.length];
+        int size = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (totalNanos[i] >= 0) {
+                sorted[size++] = samples[i];
+            }
+        }
+        if (size == 0) {
+            return;
+        }
+        Arrays.sort(sorted, 0, size);
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "  %-10s", label));
+        for (double percentile : PERCENTILES) {
+            int rank = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            line.append(String.format(Locale.ROOT, "%10.1f", sorted[Math.max(rank, 0)] / 1000.0));
+        }
+        line.append(String.format(Locale.ROOT, "%10.1f", sorted[size - 1] / 1000.0));
+        System.out.println(line);
+    }
+    
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+    
+    private static List<Booking> readScript(Path file) throws IOException {
+        List<Booking> bookings = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s*,\\s*");
+            if (fields.length != 5) {
+                throw new IllegalArgumentException(file + ":" + lineNumber
+                        + ": expected type,origin,destination,passengers,class");
+            }
+            bookings.add(new Booking(parseType(fields[0]), fields[1], fields[2],
+                    Integer.parseInt(fields[3]), fields[4]));
+        }
+        if (bookings.isEmpty()) {
+            throw new IllegalArgumentException("Script " + file + " contains no bookings");
+        }
+        return bookings;
+    }
+    
+    private static TicketType parseType(String name) {
+        return TicketType.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+    
+    private static String[] parseRoute(String route) {
+        String[] stations = route.split(">");
+        if (stations.length != 2) {
+            throw new IllegalArgumentException("Route must be ORIGIN>DESTINATION: " + route);
+        }
+        return new String[] {stations[0].trim(), stations[1].trim()};
+    }
+    
+    private static String uniform(List<String> values) {
+        StringBuilder spec = new StringBuilder();
+        for (String value : values) {
+            if (spec.length() > 0) spec.append(',');
+            spec.append(value).append(":1");
+        }
+        return spec.toString();
+    }
+    
+    private static final class Booking {
+        final TicketType type;
+        final String origin;
+        final String destination;
+        final int passengers;
+        final String travelClass;
+        
+        Booking(TicketType type, String origin, String destination, int passengers, String travelClass) {
+            this.type = type;
+            this.origin = origin;
+            this.destination = destination;
+            this.passengers = passengers;
+            this.travelClass = travelClass;
+        }
+        
+        @Override
+        public String toString() {
+            return type + " " + origin + " > " + destination + " x" + passengers + " " + travelClass;
+        }
+    }
+    
+    private static final class WeightedChoice<T> {
+        final List<T> values = new ArrayList<>();
+        private double[] cumulative = new double[0];
+        
+        interface Parser<T> {
+            T parse(String value);
+        }
+        
+        static <T> WeightedChoice<T> parse(String spec, Parser<T> parser) {
+            WeightedChoice<T> choice = new WeightedChoice<>();
+            double total = 0;
+            for (String entry : spec.split(",")) {
+                int colon = entry.lastIndexOf(':');
+                double weight = colon < 0 ? 1 : Double.parseDouble(entry.substring(colon + 1));
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Negative weight in " + spec);
+                }
+                if (weight == 0) continue;
+                total += weight;
+                choice.values.add(parser.parse((colon < 0 ? entry : entry.substring(0, colon)).trim()));
+                choice.cumulative = Arrays.copyOf(choice.cumulative, choice.values.size());
+                choice.cumulative[choice.values.size() - 1] = total;
+            }
+            if (choice.values.isEmpty()) {
+                throw new IllegalArgumentException("Mix has no positive weights: " + spec);
+            }
+            return choice;
+        }
+        
+        // Same weights restricted to the matching values, or null when none match
+        WeightedChoice<T> filter(Predicate<T> predicate) {
+            WeightedChoice<T> choice = new WeightedChoice<>();
+            double total = 0;
+            for (int i = 0; i < values.size(); i++) {
+                if (!predicate.test(values.get(i))) continue;
+                total += cumulative[i] - (i > 0 ? cumulative[i - 1] : 0);
+                choice.values.add(values.get(i));
+                choice.cumulative = Arrays.copyOf(choice.cumulative, choice.values.size());
+                choice.cumulative[choice.values.size() - 1] = total;
+            }
+            return choice.values.isEmpty() ? null : choice;
+        }
+        
+        T pick(SplittableRandom random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return values.get(index >= 0 ? Math.min(index + 1, values.size() - 1) : -index - 1);
+        }
+    }
+    
+    private static final class CountingChannel implements WritableByteChannel {
+        long count;
+        
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            count += written;
+            return written;
+        }
+        
+        @Override
+        public boolean isOpen() { return true; }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -32,6 +32,16 @@ public class TicketMachineApp extends Application {
         primaryStage.show();
     }
     
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+        if (model != null) {
+            model.close();
+        }
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
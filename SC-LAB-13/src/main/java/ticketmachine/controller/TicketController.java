@@ -1,20 +1,44 @@
 package ticketmachine.controller;
 
+import javafx.application.Platform;
+import javafx.scene.Scene;
 import javafx.scene.control.Toggle;
-import javafx.scene.control.Button;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import ticketmachine.diagnostics.BookSelectionEvent;
+import ticketmachine.diagnostics.ConfirmPaymentEvent;
+import ticketmachine.diagnostics.DownloadTicketsEvent;
+import ticketmachine.diagnostics.LatencyHistogram;
+import ticketmachine.diagnostics.MetricsRegistry;
+import ticketmachine.diagnostics.PaymentEvent;
+import ticketmachine.diagnostics.SearchEvent;
 import ticketmachine.model.*;
 import ticketmachine.view.*;
 import ticketmachine.view.TicketMachineView.Page;
-import ticketmachine.util.PdfGenerator;
+import ticketmachine.util.PdfRenderService;
 
 import java.io.File;
+import java.util.concurrent.CancellationException;
 
 public class TicketController {
     
+    private static final KeyCombination DIAGNOSTICS_SHORTCUT =
+            new KeyCodeCombination(KeyCode.D, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN);
+    
+    private static final LatencyHistogram SEARCH_LATENCY =
+            MetricsRegistry.global().histogram(MetricsRegistry.SEARCH);
+    private static final LatencyHistogram NAVIGATION_LATENCY =
+            MetricsRegistry.global().histogram(MetricsRegistry.NAVIGATION);
+    
     private final TicketMachine model;
     private final TicketMachineView view;
+    private final TicketSession session;
+    private final PdfRenderService pdfRenderer;
+    private PdfRenderService.Render currentDownload;
     
     public TicketController(TicketMachine model, TicketMachineView view) {
         if (model == null || view == null) {
@@ -22,6 +46,8 @@ public class TicketController {
         }
         this.model = model;
         this.view = view;
+        this.session = model.openSession();
+        this.pdfRenderer = new PdfRenderService();
         
         initializeBindings();
         initializeData();
@@ -37,7 +63,7 @@ public class TicketController {
         home.getOriginCombo().valueProperty().addListener(
                 (obs, oldVal, newVal) -> {
                     if (newVal != null) {
-                        model.selectOrigin(newVal);
+                        session.selectOrigin(newVal);
                         updateDestinations();
                     }
                 }
@@ -46,7 +72,7 @@ public class TicketController {
         home.getDestinationCombo().valueProperty().addListener(
                 (obs, oldVal, newVal) -> {
                     if (newVal != null) {
-                        model.selectDestination(newVal);
+                        session.selectDestination(newVal);
                     }
                 }
         );
@@ -54,7 +80,7 @@ public class TicketController {
         home.getPassengerSpinner().valueProperty().addListener(
                 (obs, oldVal, newVal) -> {
                     if (newVal != null) {
-                        model.setPassengerCount(newVal);
+                        session.setPassengerCount(newVal);
                     }
                 }
         );
@@ -62,7 +88,7 @@ public class TicketController {
         home.getClassCombo().valueProperty().addListener(
                 (obs, oldVal, newVal) -> {
                     if (newVal != null) {
-                        model.selectClass(newVal);
+                        session.selectClass(newVal);
                     }
                 }
         );
@@ -71,6 +97,8 @@ public class TicketController {
         
         ResultsView results = view.getResultsView();
         results.getBackButton().setOnAction(e -> navigateTo(Page.HOME));
+        results.setOnBook(this::handleBookSelection);
+        results.setOnFilter(this::showDepartures);
         
         PaymentView payment = view.getPaymentView();
         payment.getBackButton().setOnAction(e -> navigateTo(Page.RESULTS));
@@ -85,6 +113,16 @@ public class TicketController {
         ticket.getBackButton().setOnAction(e -> navigateTo(Page.HOME));
         ticket.getNewBookingButton().setOnAction(e -> handleNewBooking());
         ticket.getDownloadButton().setOnAction(e -> handleDownloadTickets());
+        ticket.getCancelDownloadButton().setOnAction(e -> handleCancelDownload());
+        
+        // The diagnostics page has no button; technicians open it from a keyboard
+        view.getDiagnosticsView().getBackButton().setOnAction(e -> navigateTo(Page.HOME));
+        view.getRoot().addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (DIAGNOSTICS_SHORTCUT.match(e)) {
+                navigateTo(view.getCurrentPage() == Page.DIAGNOSTICS ? Page.HOME : Page.DIAGNOSTICS);
+                e.consume();
+            }
+        });
     }
     
     private void initializeData() {
@@ -93,111 +131,133 @@ public class TicketController {
         home.setTravelClasses(model.getTravelClasses());
         
         if (!model.getOriginStations().isEmpty()) {
-            model.selectOrigin(model.getOriginStations().get(0));
+            session.selectOrigin(model.getOriginStations().get(0));
         }
-        model.selectClass("Economy");
+        session.selectClass("Economy");
     }
     
     private void handleTicketTypeChange(Toggle newToggle) {
         if (newToggle == null) return;
         
         TicketType type = (TicketType) newToggle.getUserData();
-        model.selectTicketType(type);
+        session.selectTicketType(type);
         updateDestinations();
     }
     
     private void updateDestinations() {
         HomeView home = view.getHomeView();
-        TicketType type = model.getSelectedTicketType();
-        String origin = model.getSelectedOrigin();
+        TicketType type = session.getSelectedTicketType();
+        String origin = session.getSelectedOrigin();
         
         if (type != null) {
-            home.setDestinations(model.getDestinationsForType(type), origin);
+            home.setDestinations(model.getDestinations(type, origin), origin);
             home.getDestinationCombo().setValue(null);
-            model.selectDestination(null);
+            session.selectDestination(null);
         }
     }
     
+    // Events are only committed on the success path; validation alerts block in showAndWait
+    // and would otherwise be reported as slow searches or payments.
     private void handleSearch() {
-        if (model.getSelectedTicketType() == null) {
+        long start = System.nanoTime();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        if (session.getSelectedTicketType() == null) {
             showAlert("Please select a ticket type (Train or Bus)");
             return;
         }
         
-        if (model.getSelectedOrigin() == null) {
+        if (session.getSelectedOrigin() == null) {
             showAlert("Please select an origin station");
             return;
         }
         
-        if (model.getSelectedDestination() == null) {
+        if (session.getSelectedDestination() == null) {
             showAlert("Please select a destination");
             return;
         }
         
-        ResultsView results = view.getResultsView();
-        results.showResults(
-                model.getSelectedTicketType(),
-                model.getSelectedOrigin(),
-                model.getSelectedDestination(),
-                model.getPassengerCount(),
-                model.getSelectedClass(),
-                model.getPricePerTicket()
-        );
-        
-        for (Button bookBtn : results.getBookButtons()) {
-            bookBtn.setOnAction(e -> handleBookSelection((Double) bookBtn.getUserData()));
-        }
+        showDepartures(DeparturePeriod.ALL);
         
         navigateTo(Page.RESULTS);
+        event.complete(session.getSelectedOrigin(), selectedDestinationName(), session.getPassengerCount());
+        SEARCH_LATENCY.recordSince(start);
     }
     
-    private void handleBookSelection(double price) {
+    private void showDepartures(DeparturePeriod period) {
+        if (!session.hasValidSelections()) {
+            return;
+        }
+        view.getResultsView().showResults(
+                session.getSelectedTicketType(),
+                session.getSelectedOrigin(),
+                session.getSelectedDestination(),
+                session.getPassengerCount(),
+                session.getSelectedClass(),
+                period,
+                session.findItineraries(period)
+        );
+    }
+    
+    private void handleBookSelection(Itinerary itinerary) {
+        BookSelectionEvent event = new BookSelectionEvent();
+        event.begin();
+        Departure departure = itinerary.getFirstLeg();
         PaymentView payment = view.getPaymentView();
+        double price = departure.getTotalFare();
         
-        String route = model.getSelectedOrigin() + " -> " + model.getSelectedDestination().getName();
-        payment.setOrderDetails(route, model.getPassengerCount(), model.getSelectedClass(), price);
+        String route = departure.getOrigin() + " -> " + departure.getDestination().getName();
+        payment.setOrderDetails(route, departure.getPassengers(), departure.getTravelClass(), price);
         
-        model.resetTransaction();
-        model.selectTicketType(view.getResultsView().getCurrentType());
-        model.selectOrigin(view.getResultsView().getCurrentOrigin());
-        model.selectDestination(view.getResultsView().getCurrentDestination());
-        model.setPassengerCount(view.getResultsView().getPassengerCount());
-        model.selectClass(view.getResultsView().getTravelClass());
+        session.resetTransaction();
+        session.selectDeparture(departure);
         
         payment.updatePaymentDisplay(0, price);
         
         navigateTo(Page.PAYMENT);
+        event.complete(session.getSelectedOrigin(), selectedDestinationName(), session.getPassengerCount());
     }
     
     private void handlePayment(double amount) {
-        model.insertMoney(amount);
+        PaymentEvent event = new PaymentEvent();
+        event.begin();
+        session.insertMoney(amount);
         
-        double inserted = model.getInsertedAmount();
-        double remaining = model.getRemainingAmount();
+        double inserted = session.getInsertedAmount();
+        double remaining = session.getRemainingAmount();
         
         view.getPaymentView().updatePaymentDisplay(inserted, remaining);
+        event.complete(session.getSelectedOrigin(), selectedDestinationName(), session.getPassengerCount(),
+                amount, remaining);
     }
     
     private void handleConfirmPayment() {
-        if (!model.canCompletePurchase()) {
+        if (!session.canCompletePurchase()) {
             showAlert("Insufficient payment. Please insert more money.");
             return;
         }
         
+        ConfirmPaymentEvent event = new ConfirmPaymentEvent();
+        event.begin();
+        String origin = session.getSelectedOrigin();
+        String destination = selectedDestinationName();
+        int passengers = session.getPassengerCount();
         try {
-            Ticket ticket = model.completePurchase();
-            double change = model.getLastChangeAmount();
+            Ticket ticket = session.completePurchase();
+            double change = session.getLastChangeAmount();
             
             view.getTicketView().showTicket(ticket, change);
             navigateTo(Page.TICKET);
+            event.complete(origin, destination, passengers, ticket.getTicketId());
             
         } catch (Exception e) {
+            event.complete(origin, destination, passengers, null);
             showAlert("Error completing purchase: " + e.getMessage());
         }
     }
     
     private void handleCancelTransaction() {
-        double refund = model.cancelTransaction();
+        double refund = session.cancelTransaction();
         if (refund > 0) {
             showAlert("Transaction cancelled. " + Destination.formatPKR(refund) + " returned.");
         }
@@ -205,7 +265,7 @@ public class TicketController {
     }
     
     private void handleNewBooking() {
-        model.resetTransaction();
+        session.resetTransaction();
         
         HomeView home = view.getHomeView();
         home.getTicketTypeGroup().selectToggle(null);
@@ -220,17 +280,22 @@ public class TicketController {
     }
     
     private void handleDownloadTickets() {
-        Ticket lastTicket = model.getLastPurchasedTicket();
+        Ticket lastTicket = session.getLastPurchasedTicket();
         if (lastTicket == null) {
             showAlert("No ticket to download.");
             return;
         }
         
+        // A second click while the pass is still rendering keeps following the same render
+        if (pdfRenderer.getInFlight(lastTicket) != null) {
+            return;
+        }
+        
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save Boarding Pass PDF");
         fileChooser.setInitialFileName("BoardingPass_" + lastTicket.getTicketId() + ".pdf");
         
-        FileChooser.ExtensionFilter pdfFilter = 
+        FileChooser.ExtensionFilter pdfFilter =
                 new FileChooser.ExtensionFilter("PDF Files (*.pdf)", "*.pdf");
         fileChooser.getExtensionFilters().add(pdfFilter);
         
@@ -240,24 +305,72 @@ public class TicketController {
         
         File file = fileChooser.showSaveDialog(stage);
         
-        if (file != null) {
-            try {
-                if (!file.getName().toLowerCase().endsWith(".pdf")) {
-                    file = new File(file.getAbsolutePath() + ".pdf");
-                }
-                
-                PdfGenerator.generateTicketPdf(lastTicket, file);
-                
-                showAlert("Tickets saved successfully!\n\nLocation: " + file.getAbsolutePath());
-            } catch (Exception e) {
-                showAlert("Error saving tickets: " + e.getMessage());
-                e.printStackTrace();
+        if (file == null) {
+            return;
+        }
+        if (!file.getName().toLowerCase().endsWith(".pdf")) {
+            file = new File(file.getAbsolutePath() + ".pdf");
+        }
+        
+        DownloadTicketsEvent event = new DownloadTicketsEvent();
+        event.begin();
+        TicketView ticketView = view.getTicketView();
+        ticketView.showDownloadProgress(0, lastTicket.getQuantity());
+        
+        PdfRenderService.Render render = pdfRenderer.render(lastTicket, file.toPath(),
+                (completed, total) -> Platform.runLater(() -> ticketView.showDownloadProgress(completed, total)));
+        currentDownload = render;
+        render.getResult().whenComplete((path, error) -> Platform.runLater(() -> {
+            if (currentDownload == render) {
+                currentDownload = null;
+                ticketView.hideDownloadProgress();
+            }
+            if (error == null) {
+                event.complete(lastTicket.getOrigin(), lastTicket.getDestination().getName(),
+                        lastTicket.getQuantity(), lastTicket.getTicketId(), path.toFile().length());
+                showAlert("Tickets saved successfully!\n\nLocation: " + path.toAbsolutePath());
+            } else if (!(error instanceof CancellationException)) {
+                Throwable cause = PdfRenderService.causeOf(error);
+                showAlert("Error saving tickets: " + cause.getMessage());
             }
+        }));
+    }
+    
+    private void handleCancelDownload() {
+        if (currentDownload != null && currentDownload.cancel()) {
+            showAlert("Download cancelled.");
         }
     }
     
+    public void shutdown() {
+        pdfRenderer.close();
+    }
+    
+    private String selectedDestinationName() {
+        Destination destination = session.getSelectedDestination();
+        return destination != null ? destination.getName() : null;
+    }
+    
+    // Measured to the end of the next layout pulse, when the page has been styled and laid out,
+    // without forcing that work early on the FX thread
     private void navigateTo(Page page) {
+        long start = System.nanoTime();
         view.showPage(page);
+        Scene scene = view.getRoot().getScene();
+        if (scene == null) {
+            return;
+        }
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (listener[0] == null) return;
+            NAVIGATION_LATENCY.recordSince(start);
+            Runnable self = listener[0];
+            listener[0] = null;
+            // Removed after the pulse, since the scene is still iterating its listeners
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(self));
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+        Platform.requestNextPulse();
     }
     
     private void showAlert(String message) {
@@ -272,4 +385,5 @@ public class TicketController {
     
     public TicketMachine getModel() { return model; }
     public TicketMachineView getView() { return view; }
+    public TicketSession getSession() { return session; }
 }
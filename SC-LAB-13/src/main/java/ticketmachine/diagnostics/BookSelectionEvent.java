@@ -0,0 +1,13 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.BookSelection")
+@Label("Book Selection")
+@Category({"Ticket Machine", "Controller"})
+@Description("TicketController.handleBookSelection: moves a chosen fare to the payment page")
+public class BookSelectionEvent extends KioskEvent {
+}
@@ -0,0 +1,27 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.ConfirmPayment")
+@Label("Confirm Payment")
+@Category({"Ticket Machine", "Controller"})
+@Description("TicketController.handleConfirmPayment: completes the purchase and shows the ticket")
+public class ConfirmPaymentEvent extends KioskEvent {
+    
+    @Label("Ticket ID")
+    String ticketId;
+    
+    @Label("Succeeded")
+    boolean succeeded;
+    
+    public void complete(String origin, String destination, int passengers, String ticketId) {
+        if (shouldCommit()) {
+            this.ticketId = ticketId;
+            this.succeeded = ticketId != null;
+            complete(origin, destination, passengers);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.DownloadTickets")
+@Label("Download Tickets")
+@Category({"Ticket Machine", "Controller"})
+@Description("TicketController.handleDownloadTickets: PDF rendering and write once a file is chosen")
+public class DownloadTicketsEvent extends KioskEvent {
+    
+    @Label("Ticket ID")
+    String ticketId;
+    
+    @Label("File Size")
+    @DataAmount
+    long bytes;
+    
+    public void complete(String origin, String destination, int passengers, String ticketId, long bytes) {
+        if (shouldCommit()) {
+            this.ticketId = ticketId;
+            this.bytes = bytes;
+            complete(origin, destination, passengers);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+// Callers begin() up front and call complete(...) once the work is done. The route string is only
+// built when the event will actually be recorded, so a kiosk without a recording pays a flag check.
+@Category({"Ticket Machine"})
+@StackTrace(false)
+public abstract class KioskEvent extends Event {
+    
+    @Label("Route")
+    String route;
+    
+    @Label("Passengers")
+    int passengers;
+    
+    public void complete(String origin, String destination, int passengers) {
+        if (shouldCommit()) {
+            this.route = origin != null && destination != null ? origin + " -> " + destination : null;
+            this.passengers = passengers;
+            commit();
+        }
+    }
+}
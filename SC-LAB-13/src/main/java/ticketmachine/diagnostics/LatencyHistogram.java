@@ -0,0 +1,133 @@
+package ticketmachine.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear buckets in the style of HdrHistogram: values below 64 ns are exact, above that each
+// power of two is split into 32 sub-buckets, so every reported value is within ~3% of the real one.
+// Recording is a few shifts and two atomic adds with no allocation, from any thread.
+public final class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int HALF_BUCKET_BITS = SUB_BUCKET_BITS - 1;
+    private static final long SUB_BUCKET_MASK = (1L << SUB_BUCKET_BITS) - 1;
+    private static final int BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+    
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    public LatencyHistogram(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Histogram name cannot be empty");
+        }
+        this.name = name;
+    }
+    
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(indexOf(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+    
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    static int indexOf(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        int shift = magnitude - HALF_BUCKET_BITS;
+        return (shift << HALF_BUCKET_BITS) + (int) (value >>> shift);
+    }
+    
+    // Largest value that lands in the bucket, so percentiles never under-report
+    static long highestValueAt(int index) {
+        if (index < (1 << SUB_BUCKET_BITS)) {
+            return index;
+        }
+        int shift = (index >>> HALF_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << HALF_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+    
+    public String getName() { return name; }
+    public long getCount() { return count.get(); }
+    public long getMaxNanos() { return maxNanos.get(); }
+    
+    public double getMeanNanos() {
+        long samples = count.get();
+        return samples > 0 ? (double) totalNanos.get() / samples : 0.0;
+    }
+    
+    public long getValueAtPercentile(double percentile) {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+    
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(name, copy, total, maxNanos.get(), getMeanNanos());
+    }
+    
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+    
+    public static final class Snapshot {
+        
+        private final String name;
+        private final long[] counts;
+        private final long count;
+        private final long maxNanos;
+        private final double meanNanos;
+        
+        private Snapshot(String name, long[] counts, long count, long maxNanos, double meanNanos) {
+            this.name = name;
+            this.counts = counts;
+            this.count = count;
+            this.maxNanos = maxNanos;
+            this.meanNanos = meanNanos;
+        }
+        
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public long getMaxNanos() { return maxNanos; }
+        public double getMeanNanos() { return meanNanos; }
+        
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ticketmachine.diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class MetricsRegistry {
+    
+    public static final String SEARCH = "Search";
+    public static final String PURCHASE = "Complete purchase";
+    public static final String PDF = "PDF generation";
+    public static final String NAVIGATION = "Page navigation";
+    
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final List<String> order = new ArrayList<>();
+    
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+    
+    // Look the histogram up once and keep it in a field; record() itself never touches the map
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+        synchronized (order) {
+            return histograms.computeIfAbsent(name, key -> {
+                order.add(key);
+                return new LatencyHistogram(key);
+            });
+        }
+    }
+    
+    public List<LatencyHistogram.Snapshot> snapshot() {
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        synchronized (order) {
+            for (String name : order) {
+                snapshots.add(histograms.get(name).snapshot());
+            }
+        }
+        return snapshots;
+    }
+    
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+}
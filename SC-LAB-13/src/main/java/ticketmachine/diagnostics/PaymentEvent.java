@@ -0,0 +1,27 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.Payment")
+@Label("Payment")
+@Category({"Ticket Machine", "Controller"})
+@Description("TicketController.handlePayment: accepts one note or coin")
+public class PaymentEvent extends KioskEvent {
+    
+    @Label("Amount")
+    double amount;
+    
+    @Label("Remaining")
+    double remaining;
+    
+    public void complete(String origin, String destination, int passengers, double amount, double remaining) {
+        if (shouldCommit()) {
+            this.amount = amount;
+            this.remaining = remaining;
+            complete(origin, destination, passengers);
+        }
+    }
+}
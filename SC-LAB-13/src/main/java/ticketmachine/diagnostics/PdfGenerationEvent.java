@@ -0,0 +1,34 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.PdfGeneration")
+@Label("PDF Generation")
+@Category({"Ticket Machine", "Model"})
+@Description("PdfGenerator.generateTicketPdf: renders boarding passes into a channel")
+public class PdfGenerationEvent extends KioskEvent {
+    
+    @Label("Ticket ID")
+    String ticketId;
+    
+    @Label("Document Size")
+    @DataAmount
+    long bytes;
+    
+    @Label("Options")
+    String options;
+    
+    public void complete(String origin, String destination, int passengers, String ticketId,
+                         long bytes, String options) {
+        if (shouldCommit()) {
+            this.ticketId = ticketId;
+            this.bytes = bytes;
+            this.options = options;
+            complete(origin, destination, passengers);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.Purchase")
+@Label("Complete Purchase")
+@Category({"Ticket Machine", "Model"})
+@Description("TicketSession.completePurchase: seat reservation, journal append and signing")
+public class PurchaseEvent extends KioskEvent {
+    
+    @Label("Ticket ID")
+    String ticketId;
+    
+    @Label("Travel Class")
+    String travelClass;
+    
+    @Label("Total Fare")
+    double totalFare;
+    
+    public void complete(String origin, String destination, int passengers, String ticketId,
+                         String travelClass, double totalFare) {
+        if (shouldCommit()) {
+            this.ticketId = ticketId;
+            this.travelClass = travelClass;
+            this.totalFare = totalFare;
+            complete(origin, destination, passengers);
+        }
+    }
+}
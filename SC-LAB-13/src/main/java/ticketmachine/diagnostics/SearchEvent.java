@@ -0,0 +1,13 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.Search")
+@Label("Search")
+@Category({"Ticket Machine", "Controller"})
+@Description("TicketController.handleSearch: validates the selection and renders the results page")
+public class SearchEvent extends KioskEvent {
+}
@@ -0,0 +1,23 @@
+package ticketmachine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ticketmachine.ShowResults")
+@Label("Show Results")
+@Category({"Ticket Machine", "View"})
+@Description("ResultsView.showResults: rebuilds the departures list")
+public class ShowResultsEvent extends KioskEvent {
+    
+    @Label("Results")
+    int results;
+    
+    public void complete(String origin, String destination, int passengers, int results) {
+        if (shouldCommit()) {
+            this.results = results;
+            complete(origin, destination, passengers);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ticketmachine.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Open-addressing table keyed by byte ranges, so feed IDs and names resolve to dense ints
+// straight from the parse buffer without building a String per field
+final class ByteTable {
+    
+    private byte[] pool = new byte[4096];
+    private int poolSize;
+    private int[] offsets = new int[256];
+    private int[] lengths = new int[256];
+    private int[] hashes = new int[256];
+    private int[] slots = new int[512];
+    private int size;
+    
+    int size() {
+        return size;
+    }
+    
+    int find(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) return -1;
+            if (matches(entry - 1, hash, bytes, offset, length)) return entry - 1;
+        }
+    }
+    
+    int intern(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (int entry = slots[slot]; entry != 0; entry = slots[slot]) {
+            if (matches(entry - 1, hash, bytes, offset, length)) return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+        int id = add(bytes, offset, length, hash);
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+    
+    String toString(int id) {
+        return new String(pool, offsets[id], lengths[id], StandardCharsets.UTF_8);
+    }
+    
+    private boolean matches(int id, int hash, byte[] bytes, int offset, int length) {
+        return hashes[id] == hash && lengths[id] == length
+                && Arrays.equals(pool, offsets[id], offsets[id] + length, bytes, offset, offset + length);
+    }
+    
+    private int add(byte[] bytes, int offset, int length, int hash) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+        }
+        System.arraycopy(bytes, offset, pool, poolSize, length);
+        offsets[size] = poolSize;
+        lengths[size] = length;
+        hashes[size] = hash;
+        poolSize += length;
+        return size++;
+    }
+    
+    private void rehash() {
+        int[] resized = new int[slots.length * 2];
+        int mask = resized.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (resized[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            resized[slot] = id + 1;
+        }
+        slots = resized;
+    }
+    
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,98 @@
+package ticketmachine.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+public final class Departure {
+    
+    private static final int LIMITED_SEATS = SeatInventory.CAPACITY / 4;
+    
+    private final TicketType ticketType;
+    private final String origin;
+    private final Destination destination;
+    private final String travelClass;
+    private final int passengers;
+    private final LocalDate serviceDate;
+    private final int departureMinute;
+    private final int travelMinutes;
+    private final double pricePerTicket;
+    private final int seatsAvailable;
+    
+    public Departure(TicketType ticketType, String origin, Destination destination, String travelClass,
+                     int passengers, LocalDate serviceDate, int departureMinute, int travelMinutes,
+                     double pricePerTicket, int seatsAvailable) {
+        if (ticketType == null) {
+            throw new IllegalArgumentException("Ticket type cannot be null");
+        }
+        if (origin == null || destination == null) {
+            throw new IllegalArgumentException("Origin and destination cannot be null");
+        }
+        if (passengers < 1) {
+            throw new IllegalArgumentException("Passenger count must be positive");
+        }
+        if (serviceDate == null) {
+            throw new IllegalArgumentException("Service date cannot be null");
+        }
+        if (departureMinute < 0 || departureMinute >= Timetable.MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Departure minute out of range: " + departureMinute);
+        }
+        if (travelMinutes < 0) {
+            throw new IllegalArgumentException("Travel time cannot be negative");
+        }
+        this.ticketType = ticketType;
+        this.origin = origin;
+        this.destination = destination;
+        this.travelClass = travelClass;
+        this.passengers = passengers;
+        this.serviceDate = serviceDate;
+        this.departureMinute = departureMinute;
+        this.travelMinutes = travelMinutes;
+        this.pricePerTicket = pricePerTicket;
+        this.seatsAvailable = seatsAvailable;
+    }
+    
+    public static int travelMinutes(TicketType ticketType, Destination destination) {
+        double avgSpeed = ticketType == TicketType.TRAIN ? 80.0 : 60.0;
+        return (int) Math.round((destination.getDistanceKm() / avgSpeed) * 60);
+    }
+    
+    public TicketType getTicketType() { return ticketType; }
+    public String getOrigin() { return origin; }
+    public Destination getDestination() { return destination; }
+    public String getTravelClass() { return travelClass; }
+    public int getPassengers() { return passengers; }
+    public LocalDate getServiceDate() { return serviceDate; }
+    public int getDepartureMinute() { return departureMinute; }
+    public int getTravelMinutes() { return travelMinutes; }
+    public double getPricePerTicket() { return pricePerTicket; }
+    public double getTotalFare() { return Math.round(pricePerTicket * passengers); }
+    public int getSeatsAvailable() { return seatsAvailable; }
+    public boolean hasLimitedSeats() { return seatsAvailable < LIMITED_SEATS; }
+    
+    public LocalTime getDepartureTime() {
+        return LocalTime.of(departureMinute / 60, departureMinute % 60);
+    }
+    
+    public LocalTime getArrivalTime() {
+        return getDepartureTime().plusMinutes(travelMinutes);
+    }
+    
+    public LocalDateTime getDepartureDateTime() {
+        return serviceDate.atTime(getDepartureTime());
+    }
+    
+    public LocalDateTime getArrivalDateTime() {
+        return getDepartureDateTime().plusMinutes(travelMinutes);
+    }
+    
+    public String getFormattedDuration() {
+        return (travelMinutes / 60) + "h " + (travelMinutes % 60) + "m";
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s %s -> %s at %s", ticketType.getDisplayName(), origin,
+                destination.getName(), getDepartureTime());
+    }
+}
@@ -0,0 +1,69 @@
+package ticketmachine.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+public final class DepartureKey {
+    
+    private final TicketType ticketType;
+    private final String origin;
+    private final String destination;
+    private final long departureMinute;
+    
+    public DepartureKey(TicketType ticketType, String origin, String destination, long departureMinute) {
+        if (ticketType == null || origin == null || destination == null) {
+            throw new IllegalArgumentException("Ticket type, origin and destination cannot be null");
+        }
+        this.ticketType = ticketType;
+        this.origin = origin;
+        this.destination = destination;
+        this.departureMinute = departureMinute;
+    }
+    
+    public static DepartureKey of(TicketType ticketType, String origin, Destination destination,
+                                  LocalDateTime departureTime) {
+        if (destination == null || departureTime == null) {
+            throw new IllegalArgumentException("Destination and departure time cannot be null");
+        }
+        return new DepartureKey(ticketType, origin, destination.getName(), toEpochMinute(departureTime));
+    }
+    
+    public static DepartureKey of(Ticket ticket) {
+        return of(ticket.getTicketType(), ticket.getOrigin(), ticket.getDestination(), ticket.getDepartureTime());
+    }
+    
+    public static long toEpochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+    
+    public static LocalDateTime fromEpochMinute(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+    
+    public TicketType getTicketType() { return ticketType; }
+    public String getOrigin() { return origin; }
+    public String getDestination() { return destination; }
+    public long getDepartureMinute() { return departureMinute; }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        DepartureKey that = (DepartureKey) obj;
+        return departureMinute == that.departureMinute
+                && ticketType == that.ticketType
+                && origin.equals(that.origin)
+                && destination.equals(that.destination);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(ticketType, origin, destination, departureMinute);
+    }
+    
+    @Override
+    public String toString() {
+        return ticketType + " " + origin + " -> " + destination + " @ " + fromEpochMinute(departureMinute);
+    }
+}
@@ -0,0 +1,24 @@
+package ticketmachine.model;
+
+public enum DeparturePeriod {
+    ALL("All Times", 0, 24 * 60),
+    MORNING("Morning", 0, 12 * 60),
+    EVENING("Evening", 17 * 60, 24 * 60);
+    
+    private final String displayName;
+    private final int startMinute;
+    private final int endMinute;
+    
+    DeparturePeriod(String displayName, int startMinute, int endMinute) {
+        this.displayName = displayName;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+    }
+    
+    public String getDisplayName() { return displayName; }
+    public int getStartMinute() { return startMinute; }
+    public int getEndMinute() { return endMinute; }
+    
+    @Override
+    public String toString() { return displayName; }
+}
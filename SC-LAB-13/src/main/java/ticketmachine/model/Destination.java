@@ -1,5 +1,6 @@
 package ticketmachine.model;
 
+import java.util.Locale;
 import java.util.Objects;
 
 public class Destination {
@@ -32,8 +33,9 @@ public class Destination {
         return Math.round(basePrice * ticketType.getFareMultiplier());
     }
     
+    // Pinned to English so the UI, PDFs and ReceiptTemplate group thousands the same way
     public static String formatPKR(double amount) {
-        return String.format("Rs. %,.0f", amount);
+        return String.format(Locale.ENGLISH, "Rs. %,.0f", amount);
     }
     
     @Override
@@ -0,0 +1,227 @@
+package ticketmachine.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class FareMatrix {
+    
+    private static final TicketType[] TYPES = TicketType.values();
+    
+    private final List<String> originStations;
+    // Destinations sold from each origin, per type; origins that sell the same list share one table
+    private final List<List<List<Destination>>> destinationsByOrigin;
+    private final List<List<Destination>> destinationsByType;
+    private final List<String> travelClasses;
+    private final double[] classMultipliers;
+    
+    private final Map<String, Integer> originIndex;
+    private final Map<String, Integer> classIndex;
+    
+    private final int classCount;
+    private final Table[] tables;
+    
+    private FareMatrix(List<String> originStations, List<List<List<Destination>>> destinationsByOrigin,
+                       Map<String, Double> classMultipliers) {
+        this.originStations = Collections.unmodifiableList(new ArrayList<>(originStations));
+        this.destinationsByOrigin = destinationsByOrigin;
+        
+        this.travelClasses = Collections.unmodifiableList(new ArrayList<>(classMultipliers.keySet()));
+        this.classMultipliers = new double[travelClasses.size()];
+        for (int i = 0; i < travelClasses.size(); i++) {
+            this.classMultipliers[i] = classMultipliers.get(travelClasses.get(i));
+        }
+        
+        this.originIndex = indexOf(this.originStations);
+        this.classIndex = indexOf(this.travelClasses);
+        this.classCount = travelClasses.size();
+        
+        this.tables = new Table[originStations.size() * TYPES.length];
+        List<List<Destination>> destinations = new ArrayList<>(TYPES.length);
+        for (TicketType type : TYPES) {
+            Map<List<Destination>, Table> shared = new IdentityHashMap<>();
+            Map<String, Destination> sold = new LinkedHashMap<>();
+            List<List<Destination>> byOrigin = destinationsByOrigin.get(type.ordinal());
+            for (int o = 0; o < originStations.size(); o++) {
+                List<Destination> list = byOrigin.get(o);
+                Table table = shared.get(list);
+                if (table == null) {
+                    table = new Table(list, type);
+                    shared.put(list, table);
+                }
+                tables[o * TYPES.length + type.ordinal()] = table;
+                for (Destination destination : list) {
+                    sold.putIfAbsent(destination.getName(), destination);
+                }
+            }
+            destinations.add(Collections.unmodifiableList(new ArrayList<>(sold.values())));
+        }
+        this.destinationsByType = Collections.unmodifiableList(destinations);
+    }
+    
+    // Every origin sells every destination of a type
+    public static FareMatrix build(List<String> originStations, List<Destination> trainDestinations,
+                                   List<Destination> busDestinations, Map<String, Double> classMultipliers) {
+        if (originStations == null || trainDestinations == null || busDestinations == null) {
+            throw new IllegalArgumentException("Stations and destinations cannot be null");
+        }
+        checkClasses(classMultipliers);
+        List<List<List<Destination>>> byType = new ArrayList<>(TYPES.length);
+        for (TicketType type : TYPES) {
+            List<Destination> destinations = type == TicketType.TRAIN ? trainDestinations : busDestinations;
+            byType.add(sameForAll(originStations.size(), destinations));
+        }
+        return new FareMatrix(originStations, byType, new LinkedHashMap<>(classMultipliers));
+    }
+    
+    // Each origin sells only the destinations it serves, so an imported network prices just its real pairs
+    public static FareMatrix build(List<String> originStations,
+                                   Map<TicketType, Map<String, List<Destination>>> destinationsByOrigin,
+                                   Map<String, Double> classMultipliers) {
+        if (originStations == null || destinationsByOrigin == null) {
+            throw new IllegalArgumentException("Stations and destinations cannot be null");
+        }
+        checkClasses(classMultipliers);
+        List<List<List<Destination>>> byType = new ArrayList<>(TYPES.length);
+        for (TicketType type : TYPES) {
+            Map<String, List<Destination>> byOrigin = destinationsByOrigin.get(type);
+            List<List<Destination>> lists = new ArrayList<>(originStations.size());
+            for (String origin : originStations) {
+                List<Destination> list = byOrigin == null ? null : byOrigin.get(origin);
+                lists.add(list == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(list)));
+            }
+            byType.add(lists);
+        }
+        return new FareMatrix(originStations, byType, new LinkedHashMap<>(classMultipliers));
+    }
+    
+    private static void checkClasses(Map<String, Double> classMultipliers) {
+        if (classMultipliers == null || classMultipliers.isEmpty()) {
+            throw new IllegalArgumentException("At least one travel class is required");
+        }
+    }
+    
+    private static List<List<Destination>> sameForAll(int origins, List<Destination> destinations) {
+        List<Destination> list = Collections.unmodifiableList(new ArrayList<>(destinations));
+        return new ArrayList<>(Collections.nCopies(origins, list));
+    }
+    
+    public FareMatrix withDestinations(TicketType type, List<Destination> destinations) {
+        if (type == null || destinations == null) {
+            throw new IllegalArgumentException("Ticket type and destinations cannot be null");
+        }
+        List<List<List<Destination>>> byType = new ArrayList<>(destinationsByOrigin);
+        byType.set(type.ordinal(), sameForAll(originStations.size(), destinations));
+        return new FareMatrix(originStations, byType, getClassMultipliers());
+    }
+    
+    public FareMatrix withClassMultiplier(String travelClass, double multiplier) {
+        if (travelClass == null || travelClass.trim().isEmpty()) {
+            throw new IllegalArgumentException("Travel class cannot be null or empty");
+        }
+        if (multiplier <= 0) {
+            throw new IllegalArgumentException("Class multiplier must be positive");
+        }
+        Map<String, Double> multipliers = getClassMultipliers();
+        multipliers.put(travelClass.trim(), multiplier);
+        return new FareMatrix(originStations, destinationsByOrigin, multipliers);
+    }
+    
+    private static <T> Map<T, Integer> indexOf(List<T> values) {
+        Map<T, Integer> index = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            index.putIfAbsent(values.get(i), i);
+        }
+        return Collections.unmodifiableMap(index);
+    }
+    
+    private Table table(int origin, TicketType type) {
+        return tables[origin * TYPES.length + type.ordinal()];
+    }
+    
+    public int originIndex(String origin) {
+        Integer index = origin == null ? null : originIndex.get(origin);
+        return index == null ? -1 : index;
+    }
+    
+    // Position of the destination in the origin's own table, which is only valid with that origin
+    public int destinationIndex(int origin, TicketType type, String destination) {
+        if (origin < 0 || type == null || destination == null) return -1;
+        Integer index = table(origin, type).index.get(destination);
+        return index == null ? -1 : index;
+    }
+    
+    public int classIndex(String travelClass) {
+        Integer index = travelClass == null ? null : classIndex.get(travelClass);
+        return index == null ? -1 : index;
+    }
+    
+    public double price(int origin, TicketType type, int destination, int travelClass) {
+        return table(origin, type).prices[destination * classCount + travelClass];
+    }
+    
+    public double price(String origin, TicketType type, Destination destination, String travelClass) {
+        int o = originIndex(origin);
+        int d = destination == null ? -1 : destinationIndex(o, type, destination.getName());
+        int c = classIndex(travelClass);
+        if (o < 0 || d < 0) {
+            throw new IllegalArgumentException("Unknown route: " + origin + " -> " + destination);
+        }
+        return price(o, type, d, c < 0 ? 0 : c);
+    }
+    
+    public Destination destination(int origin, TicketType type, int destination) {
+        return table(origin, type).destinations.get(destination);
+    }
+    
+    public List<String> getOriginStations() { return originStations; }
+    public List<String> getTravelClasses() { return travelClasses; }
+    
+    public List<Destination> getDestinations(TicketType type) {
+        return destinationsByType.get(type.ordinal());
+    }
+    
+    // Distances differ by origin on an imported network, so menus list the origin's own destinations
+    public List<Destination> getDestinations(TicketType type, String origin) {
+        int o = originIndex(origin);
+        return o < 0 ? getDestinations(type) : table(o, type).destinations;
+    }
+    
+    public double getClassMultiplier(int travelClass) {
+        return classMultipliers[travelClass];
+    }
+    
+    public Map<String, Double> getClassMultipliers() {
+        Map<String, Double> multipliers = new LinkedHashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            multipliers.put(travelClasses.get(i), classMultipliers[i]);
+        }
+        return multipliers;
+    }
+    
+    private final class Table {
+        final List<Destination> destinations;
+        final Map<String, Integer> index;
+        final double[] prices;
+        
+        Table(List<Destination> destinations, TicketType type) {
+            this.destinations = destinations;
+            Map<String, Integer> names = new HashMap<>();
+            for (int d = 0; d < destinations.size(); d++) {
+                names.putIfAbsent(destinations.get(d).getName(), d);
+            }
+            this.index = names;
+            this.prices = new double[destinations.size() * classCount];
+            for (int d = 0; d < destinations.size(); d++) {
+                double basePrice = destinations.get(d).calculatePrice(type);
+                for (int c = 0; c < classCount; c++) {
+                    prices[d * classCount + c] = Math.round(basePrice * classMultipliers[c]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package ticketmachine.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Loads a GTFS-style feed (stops.txt, routes.txt, trips.txt, stop_times.txt) in one pass per file.
+// Each trip is stored once with its timed stops, and any later stop on it can be sold from an earlier
+// one; stop_times.txt must keep each trip's rows together, which is how feeds are normally published.
+public final class FeedImporter {
+    
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    
+    private final Path directory;
+    private final ByteTable stopIds = new ByteTable();
+    private final ByteTable stationNames = new ByteTable();
+    private final ByteTable routeIds = new ByteTable();
+    private final ByteTable tripIds = new ByteTable();
+    
+    private int[] stopStation = new int[256];
+    private double[] stopLatitude = new double[256];
+    private double[] stopLongitude = new double[256];
+    private boolean[] stopLocated = new boolean[256];
+    private TicketType[] routeTypes = new TicketType[64];
+    private int[] tripRoute = new int[1024];
+    private String[] stations;
+    
+    private final Timetable.Builder timetable = new Timetable.Builder();
+    
+    private int tripSize;
+    private int[] tripSequence = new int[64];
+    private int[] tripStops = new int[64];
+    private int[] tripArrivals = new int[64];
+    private int[] tripDepartures = new int[64];
+    private int departureCount;
+    private int stopTimeCount;
+    
+    private FeedImporter(Path directory) {
+        this.directory = directory;
+    }
+    
+    public static Network load(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Feed directory cannot be null");
+        }
+        FeedImporter importer = new FeedImporter(directory);
+        try {
+            importer.readStops(FeedReader.open(directory.resolve("stops.txt")));
+            importer.readRoutes(FeedReader.open(directory.resolve("routes.txt")));
+            importer.readTrips(FeedReader.open(directory.resolve("trips.txt")));
+            importer.readStopTimes(FeedReader.open(directory.resolve("stop_times.txt")));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read feed in " + directory, e);
+        }
+        return importer.toNetwork();
+    }
+    
+    private void readStops(FeedReader reader) {
+        int idColumn = reader.requireColumn("stop_id");
+        int nameColumn = reader.requireColumn("stop_name");
+        int latColumn = reader.column("stop_lat");
+        int lonColumn = reader.column("stop_lon");
+        while (reader.next()) {
+            int stop = reader.intern(idColumn, stopIds);
+            if (stop == stopStation.length) {
+                int capacity = stop * 2;
+                stopStation = Arrays.copyOf(stopStation, capacity);
+                stopLatitude = Arrays.copyOf(stopLatitude, capacity);
+                stopLongitude = Arrays.copyOf(stopLongitude, capacity);
+                stopLocated = Arrays.copyOf(stopLocated, capacity);
+            }
+            // Platforms that share a name collapse into one station
+            stopStation[stop] = reader.intern(nameColumn, stationNames);
+            if (!reader.isEmpty(latColumn) && !reader.isEmpty(lonColumn)) {
+                stopLatitude[stop] = Math.toRadians(reader.parseDouble(latColumn));
+                stopLongitude[stop] = Math.toRadians(reader.parseDouble(lonColumn));
+                stopLocated[stop] = true;
+            }
+        }
+        // One String per distinct station, shared by every route and departure that mentions it
+        stations = new String[stationNames.size()];
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = stationNames.toString(i);
+        }
+    }
+    
+    private void readRoutes(FeedReader reader) {
+        int idColumn = reader.requireColumn("route_id");
+        int typeColumn = reader.requireColumn("route_type");
+        while (reader.next()) {
+            int route = reader.intern(idColumn, routeIds);
+            if (route == routeTypes.length) {
+                routeTypes = Arrays.copyOf(routeTypes, route * 2);
+            }
+            routeTypes[route] = ticketTypeOf(reader.parseInt(typeColumn));
+        }
+    }
+    
+    // Basic and extended GTFS route types; anything that is not rail or bus is skipped
+    static TicketType ticketTypeOf(int routeType) {
+        if (routeType == 2 || (routeType >= 100 && routeType < 200)) return TicketType.TRAIN;
+        if (routeType == 3 || (routeType >= 200 && routeType < 300) || (routeType >= 700 && routeType < 800)) {
+            return TicketType.BUS;
+        }
+        return null;
+    }
+    
+    private void readTrips(FeedReader reader) {
+        int routeColumn = reader.requireColumn("route_id");
+        int idColumn = reader.requireColumn("trip_id");
+        while (reader.next()) {
+            int route = reader.find(routeColumn, routeIds);
+            if (route < 0) {
+                throw reader.error("unknown route_id");
+            }
+            int trip = reader.intern(idColumn, tripIds);
+            if (trip == tripRoute.length) {
+                tripRoute = Arrays.copyOf(tripRoute, trip * 2);
+            }
+            tripRoute[trip] = route;
+        }
+    }
+    
+    private void readStopTimes(FeedReader reader) {
+        int tripColumn = reader.requireColumn("trip_id");
+        int stopColumn = reader.requireColumn("stop_id");
+        int sequenceColumn = reader.requireColumn("stop_sequence");
+        int arrivalColumn = reader.requireColumn("arrival_time");
+        int departureColumn = reader.requireColumn("departure_time");
+        BitSet finished = new BitSet(tripIds.size());
+        int currentTrip = -1;
+        while (reader.next()) {
+            stopTimeCount++;
+            int trip = reader.find(tripColumn, tripIds);
+            if (trip < 0) {
+                throw reader.error("unknown trip_id");
+            }
+            if (trip != currentTrip) {
+                flushTrip(currentTrip);
+                if (finished.get(trip)) {
+                    throw reader.error("rows for a trip_id must be contiguous");
+                }
+                finished.set(trip);
+                currentTrip = trip;
+            }
+            int stop = reader.find(stopColumn, stopIds);
+            if (stop < 0) {
+                throw reader.error("unknown stop_id");
+            }
+            int arrival = reader.parseTime(arrivalColumn);
+            int departure = reader.parseTime(departureColumn);
+            if (arrival < 0 && departure < 0) {
+                continue;
+            }
+            if (tripSize == tripStops.length) {
+                int capacity = tripSize * 2;
+                tripSequence = Arrays.copyOf(tripSequence, capacity);
+                tripStops = Arrays.copyOf(tripStops, capacity);
+                tripArrivals = Arrays.copyOf(tripArrivals, capacity);
+                tripDepartures = Arrays.copyOf(tripDepartures, capacity);
+            }
+            tripSequence[tripSize] = reader.parseInt(sequenceColumn);
+            tripStops[tripSize] = stop;
+            tripArrivals[tripSize] = arrival < 0 ? departure : arrival;
+            tripDepartures[tripSize] = departure < 0 ? arrival : departure;
+            tripSize++;
+        }
+        flushTrip(currentTrip);
+    }
+    
+    private void flushTrip(int trip) {
+        int size = tripSize;
+        tripSize = 0;
+        if (trip < 0 || size < 2) return;
+        TicketType type = routeTypes[tripRoute[trip]];
+        if (type == null) return;
+        
+        // Trips are short, so an insertion sort on stop_sequence is cheaper than anything general
+        for (int i = 1; i < size; i++) {
+            int sequence = tripSequence[i];
+            int stop = tripStops[i];
+            int arrival = tripArrivals[i];
+            int departure = tripDepartures[i];
+            int j = i - 1;
+            for (; j >= 0 && tripSequence[j] > sequence; j--) {
+                tripSequence[j + 1] = tripSequence[j];
+                tripStops[j + 1] = tripStops[j];
+                tripArrivals[j + 1] = tripArrivals[j];
+                tripDepartures[j + 1] = tripDepartures[j];
+            }
+            tripSequence[j + 1] = sequence;
+            tripStops[j + 1] = stop;
+            tripArrivals[j + 1] = arrival;
+            tripDepartures[j + 1] = departure;
+        }
+        
+        // Times are kept relative to the service day the trip leaves on; a stop timed before the one
+        // it follows is a feed error and is dropped rather than sold as a negative journey
+        int dayOffset = tripDepartures[0] - tripDepartures[0] % Timetable.MINUTES_PER_DAY;
+        String[] stops = new String[size];
+        double[] distances = new double[size];
+        int[] arrivals = new int[size];
+        int[] departures = new int[size];
+        int kept = 0;
+        int previous = -1;
+        for (int i = 0; i < size; i++) {
+            int arrival = tripArrivals[i] - dayOffset;
+            int departure = Math.max(arrival, tripDepartures[i] - dayOffset);
+            if (kept > 0 && arrival < departures[kept - 1]) continue;
+            stops[kept] = stations[stopStation[tripStops[i]]];
+            distances[kept] = kept == 0 ? 0 : distances[kept - 1] + distanceKm(tripStops[previous], tripStops[i]);
+            arrivals[kept] = arrival;
+            departures[kept] = departure;
+            previous = i;
+            kept++;
+        }
+        if (kept < 2) return;
+        timetable.addTrip(type, Arrays.copyOf(stops, kept), Arrays.copyOf(distances, kept),
+                Arrays.copyOf(arrivals, kept), Arrays.copyOf(departures, kept));
+        departureCount += kept - 1;
+    }
+    
+    private double distanceKm(int from, int to) {
+        if (!stopLocated[from] || !stopLocated[to]) return 0;
+        double dLat = stopLatitude[to] - stopLatitude[from];
+        double dLon = stopLongitude[to] - stopLongitude[from];
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(stopLatitude[from]) * Math.cos(stopLatitude[to]) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+    
+    private Network toNetwork() {
+        Map<TicketType, Map<String, List<Destination>>> destinationsByOrigin = timetable.destinationsByOrigin();
+        if (destinationsByOrigin.isEmpty()) {
+            throw new IllegalArgumentException("Feed in " + directory + " has no train or bus departures");
+        }
+        return new Network(destinationsByOrigin, timetable, stations.length, tripIds.size(), stopTimeCount,
+                departureCount);
+    }
+    
+    public static final class Network {
+        
+        private final List<String> originStations;
+        private final Map<TicketType, Map<String, List<Destination>>> destinationsByOrigin;
+        private final List<Destination> trainDestinations;
+        private final List<Destination> busDestinations;
+        private final Timetable.Builder timetable;
+        private final int stationCount;
+        private final int tripCount;
+        private final int stopTimeCount;
+        private final int departureCount;
+        
+        private Network(Map<TicketType, Map<String, List<Destination>>> destinationsByOrigin,
+                        Timetable.Builder timetable, int stationCount, int tripCount, int stopTimeCount,
+                        int departureCount) {
+            Set<String> origins = new LinkedHashSet<>();
+            for (Map<String, List<Destination>> byOrigin : destinationsByOrigin.values()) {
+                origins.addAll(byOrigin.keySet());
+            }
+            this.originStations = Collections.unmodifiableList(new ArrayList<>(origins));
+            this.destinationsByOrigin = Collections.unmodifiableMap(destinationsByOrigin);
+            this.trainDestinations = sold(destinationsByOrigin.get(TicketType.TRAIN));
+            this.busDestinations = sold(destinationsByOrigin.get(TicketType.BUS));
+            this.timetable = timetable;
+            this.stationCount = stationCount;
+            this.tripCount = tripCount;
+            this.stopTimeCount = stopTimeCount;
+            this.departureCount = departureCount;
+        }
+        
+        // Every station sold from some origin, at the distance it is first sold at
+        private static List<Destination> sold(Map<String, List<Destination>> byOrigin) {
+            if (byOrigin == null) return Collections.emptyList();
+            Map<String, Destination> sold = new LinkedHashMap<>();
+            for (List<Destination> destinations : byOrigin.values()) {
+                for (Destination destination : destinations) {
+                    sold.putIfAbsent(destination.getName(), destination);
+                }
+            }
+            return Collections.unmodifiableList(new ArrayList<>(sold.values()));
+        }
+        
+        public FareMatrix buildFareMatrix(Map<String, Double> classMultipliers) {
+            return FareMatrix.build(originStations, destinationsByOrigin, classMultipliers);
+        }
+        
+        public Timetable buildTimetable(FareMatrix fareMatrix) {
+            return timetable.build(fareMatrix);
+        }
+        
+        public List<String> getOriginStations() { return originStations; }
+        public Map<TicketType, Map<String, List<Destination>>> getDestinationsByOrigin() { return destinationsByOrigin; }
+        public List<Destination> getTrainDestinations() { return trainDestinations; }
+        public List<Destination> getBusDestinations() { return busDestinations; }
+        public int getStationCount() { return stationCount; }
+        public int getTripCount() { return tripCount; }
+        public int getStopTimeCount() { return stopTimeCount; }
+        public int getDepartureCount() { return departureCount; }
+    }
+}
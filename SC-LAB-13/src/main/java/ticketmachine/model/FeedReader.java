@@ -0,0 +1,235 @@
+package ticketmachine.model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Reads one comma-separated feed file through a read-only mapping. Each row is unquoted into a
+// reusable byte buffer and fields are exposed as offsets into it, so nothing is allocated per field.
+final class FeedReader {
+    
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final String[] header;
+    private int position;
+    private int lineNumber;
+    
+    private byte[] line = new byte[256];
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+    
+    private FeedReader(Path file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        // Skip a UTF-8 byte order mark
+        if (buffer.limit() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+                && buffer.get(2) == (byte) 0xBF) {
+            position = 3;
+        }
+        if (!next()) {
+            throw new IllegalArgumentException("Feed file is empty: " + file);
+        }
+        this.header = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            header[i] = new String(line, fieldStart[i], fieldEnd[i] - fieldStart[i], StandardCharsets.UTF_8).trim();
+        }
+    }
+    
+    static FeedReader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Feed file is larger than 2 GB: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new FeedReader(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+    
+    int column(String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals(name)) return i;
+        }
+        return -1;
+    }
+    
+    int requireColumn(String name) {
+        int column = column(name);
+        if (column < 0) {
+            throw new IllegalArgumentException(file.getFileName() + " has no " + name + " column");
+        }
+        return column;
+    }
+    
+    boolean next() {
+        int limit = buffer.limit();
+        while (position < limit) {
+            lineNumber++;
+            readLine(limit);
+            if (fieldCount > 1 || fieldEnd[0] > fieldStart[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void readLine(int limit) {
+        int length = 0;
+        int field = 0;
+        boolean quoted = false;
+        fieldStart[0] = 0;
+        while (position < limit) {
+            byte b = buffer.get(position++);
+            if (quoted) {
+                if (b == '"') {
+                    if (position < limit && buffer.get(position) == '"') {
+                        position++;
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else if (b == '\n') {
+                    lineNumber++;
+                }
+            } else if (b == '"') {
+                quoted = true;
+                continue;
+            } else if (b == ',') {
+                fieldEnd[field++] = length;
+                if (field == fieldStart.length) {
+                    fieldStart = Arrays.copyOf(fieldStart, field * 2);
+                    fieldEnd = Arrays.copyOf(fieldEnd, field * 2);
+                }
+                fieldStart[field] = length;
+                continue;
+            } else if (b == '\n') {
+                break;
+            } else if (b == '\r') {
+                continue;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+        fieldEnd[field] = length;
+        fieldCount = field + 1;
+    }
+    
+    private int start(int column) {
+        int start = fieldStart[column];
+        int end = fieldEnd[column];
+        while (start < end && line[start] == ' ') start++;
+        return start;
+    }
+    
+    private int end(int column) {
+        int start = fieldStart[column];
+        int end = fieldEnd[column];
+        while (end > start && line[end - 1] == ' ') end--;
+        return end;
+    }
+    
+    boolean isEmpty(int column) {
+        return column < 0 || column >= fieldCount || start(column) == end(column);
+    }
+    
+    int intern(int column, ByteTable table) {
+        if (isEmpty(column)) {
+            throw error("missing " + header[column]);
+        }
+        int start = start(column);
+        return table.intern(line, start, end(column) - start);
+    }
+    
+    int find(int column, ByteTable table) {
+        if (isEmpty(column)) {
+            throw error("missing " + header[column]);
+        }
+        int start = start(column);
+        return table.find(line, start, end(column) - start);
+    }
+    
+    int parseInt(int column) {
+        if (isEmpty(column)) {
+            throw error("missing " + header[column]);
+        }
+        int end = end(column);
+        int i = start(column);
+        boolean negative = line[i] == '-';
+        if (negative) i++;
+        if (i == end) throw error("invalid number in " + header[column]);
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) throw error("invalid number in " + header[column]);
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+    
+    double parseDouble(int column) {
+        if (isEmpty(column)) {
+            throw error("missing " + header[column]);
+        }
+        int end = end(column);
+        int i = start(column);
+        boolean negative = line[i] == '-';
+        if (negative || line[i] == '+') i++;
+        long digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            byte b = line[i];
+            if (b == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) throw error("invalid number in " + header[column]);
+            any = true;
+            if (digits < 100_000_000_000_000L) {
+                digits = digits * 10 + digit;
+                if (fraction) scale++;
+            } else if (!fraction) {
+                scale--;
+            }
+        }
+        if (!any) throw error("invalid number in " + header[column]);
+        double value = scale >= 0 ? digits / Math.pow(10, scale) : digits * Math.pow(10, -scale);
+        return negative ? -value : value;
+    }
+    
+    // HH:MM:SS as minutes past the start of the service day; hours may run past 24. -1 when empty.
+    int parseTime(int column) {
+        if (isEmpty(column)) return -1;
+        int end = end(column);
+        int minutes = 0;
+        int part = 0;
+        int parts = 0;
+        for (int i = start(column); i <= end; i++) {
+            if (i == end || line[i] == ':') {
+                if (parts == 0) minutes = part * 60;
+                else if (parts == 1) minutes += part;
+                parts++;
+                part = 0;
+                continue;
+            }
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) throw error("invalid time in " + header[column]);
+            part = part * 10 + digit;
+        }
+        if (parts < 2) throw error("invalid time in " + header[column]);
+        return minutes;
+    }
+    
+    IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(file.getFileName() + " line " + lineNumber + ": " + message);
+    }
+}
@@ -0,0 +1,191 @@
+package ticketmachine.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GateValidator {
+    
+    public static final int DEFAULT_EXPECTED_TICKETS = 1 << 20;
+    public static final int MAX_PASSENGERS = 64;
+    
+    // ~1% false positives with seven probes at 9.6 bits per ticket
+    private static final double BITS_PER_TICKET = 9.6;
+    private static final int PROBES = 7;
+    
+    private final Map<Long, Entry> tickets;
+    private final AtomicLongArray bloom;
+    private final long bloomMask;
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder bloomRejections = new LongAdder();
+    private volatile long statisticsStart = System.nanoTime();
+    
+    public GateValidator() {
+        this(DEFAULT_EXPECTED_TICKETS);
+    }
+    
+    public GateValidator(int expectedTickets) {
+        if (expectedTickets <= 0) {
+            throw new IllegalArgumentException("Expected ticket count must be positive");
+        }
+        // Power-of-two bit count so probes can be masked instead of reduced modulo
+        long bits = Long.highestOneBit((long) Math.ceil(expectedTickets * BITS_PER_TICKET) - 1) << 1;
+        bits = Math.max(bits, Long.SIZE);
+        this.bloom = new AtomicLongArray((int) (bits >>> 6));
+        this.bloomMask = bits - 1;
+        this.tickets = new ConcurrentHashMap<>(Math.min(expectedTickets, 1 << 16));
+    }
+    
+    public void register(Ticket ticket) {
+        if (ticket == null) {
+            throw new IllegalArgumentException("Ticket cannot be null");
+        }
+        // The index entry is published before the filter bits, so a positive filter answer
+        // can at worst race to a map miss, never the other way round
+        tickets.put(ticket.getId(), new Entry(DepartureKey.of(ticket), Math.min(ticket.getQuantity(), MAX_PASSENGERS)));
+        long hash = mix(ticket.getId());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (h1 + (long) i * h2) & bloomMask;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bloom.get(word) & mask) == 0) {
+                bloom.accumulateAndGet(word, mask, (current, add) -> current | add);
+            }
+        }
+    }
+    
+    public boolean mightContain(long ticketId) {
+        long hash = mix(ticketId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (h1 + (long) i * h2) & bloomMask;
+            if ((bloom.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public ValidationResult validate(String passengerCode, DepartureKey departure) {
+        int separator = passengerCode != null ? passengerCode.lastIndexOf('P') : -1;
+        if (separator <= 0) {
+            return count(ValidationResult.UNKNOWN);
+        }
+        long ticketId;
+        int passengerNumber;
+        try {
+            ticketId = TicketIdAllocator.parse(passengerCode.substring(0, separator));
+            passengerNumber = Integer.parseInt(passengerCode, separator + 1, passengerCode.length(), 10);
+        } catch (IllegalArgumentException e) {
+            return count(ValidationResult.UNKNOWN);
+        }
+        return validate(ticketId, passengerNumber, departure);
+    }
+    
+    public ValidationResult validate(long ticketId, int passengerNumber, DepartureKey departure) {
+        if (!mightContain(ticketId)) {
+            bloomRejections.increment();
+            return count(ValidationResult.UNKNOWN);
+        }
+        Entry entry = tickets.get(ticketId);
+        if (entry == null) {
+            return count(ValidationResult.UNKNOWN);
+        }
+        // Checked before marking so a scan at the wrong gate does not burn the ticket
+        if (departure != null && !entry.departure.equals(departure)) {
+            return count(ValidationResult.WRONG_DEPARTURE);
+        }
+        if (passengerNumber < 1 || passengerNumber > entry.passengers) {
+            return count(ValidationResult.INVALID_PASSENGER);
+        }
+        long bit = 1L << (passengerNumber - 1);
+        long used = entry.used.getAndUpdate(current -> current | bit);
+        return count((used & bit) != 0 ? ValidationResult.ALREADY_USED : ValidationResult.VALID);
+    }
+    
+    public int validateBatch(long[] ticketIds, int[] passengerNumbers, DepartureKey departure,
+                             ValidationResult[] results) {
+        if (ticketIds == null || passengerNumbers == null || results == null) {
+            throw new IllegalArgumentException("Batch arrays cannot be null");
+        }
+        if (passengerNumbers.length < ticketIds.length || results.length < ticketIds.length) {
+            throw new IllegalArgumentException("Batch arrays must be at least as long as the ticket IDs");
+        }
+        int valid = 0;
+        for (int i = 0; i < ticketIds.length; i++) {
+            results[i] = validate(ticketIds[i], passengerNumbers[i], departure);
+            if (results[i] == ValidationResult.VALID) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+    
+    public boolean isUsed(long ticketId, int passengerNumber) {
+        Entry entry = tickets.get(ticketId);
+        if (entry == null || passengerNumber < 1 || passengerNumber > entry.passengers) {
+            return false;
+        }
+        return (entry.used.get() & (1L << (passengerNumber - 1))) != 0;
+    }
+    
+    public int size() {
+        return tickets.size();
+    }
+    
+    public long getValidationCount() {
+        return validations.sum();
+    }
+    
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+    
+    public long getBloomRejectionCount() {
+        return bloomRejections.sum();
+    }
+    
+    public double getValidationsPerSecond() {
+        long elapsed = System.nanoTime() - statisticsStart;
+        return elapsed > 0 ? validations.sum() * 1_000_000_000.0 / elapsed : 0.0;
+    }
+    
+    public void resetStatistics() {
+        validations.reset();
+        accepted.reset();
+        bloomRejections.reset();
+        statisticsStart = System.nanoTime();
+    }
+    
+    private ValidationResult count(ValidationResult result) {
+        validations.increment();
+        if (result == ValidationResult.VALID) {
+            accepted.increment();
+        }
+        return result;
+    }
+    
+    // Stafford variant 13 finalizer; snowflake IDs differ mostly in their low sequence bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    private static final class Entry {
+        final DepartureKey departure;
+        final int passengers;
+        final AtomicLong used = new AtomicLong();
+        
+        Entry(DepartureKey departure, int passengers) {
+            this.departure = departure;
+            this.passengers = passengers;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ticketmachine.model;
+
+public class HeapTicketHistory implements TicketHistory {
+    
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    
+    private volatile Ticket[][] chunks = new Ticket[0][];
+    private volatile int size;
+    
+    @Override
+    public synchronized int add(Ticket ticket) {
+        if (ticket == null) {
+            throw new IllegalArgumentException("Ticket cannot be null");
+        }
+        int index = size;
+        int chunk = index >>> CHUNK_SHIFT;
+        Ticket[][] current = chunks;
+        if (chunk == current.length) {
+            Ticket[][] grown = new Ticket[chunk + 1][];
+            System.arraycopy(current, 0, grown, 0, chunk);
+            grown[chunk] = new Ticket[CHUNK_SIZE];
+            chunks = current = grown;
+        }
+        current[chunk][index & (CHUNK_SIZE - 1)] = ticket;
+        size = index + 1;
+        return index;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public Ticket get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+    }
+}
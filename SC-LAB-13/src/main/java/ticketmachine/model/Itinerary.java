@@ -0,0 +1,112 @@
+package ticketmachine.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class Itinerary {
+    
+    private final List<Departure> legs;
+    
+    public Itinerary(List<Departure> legs) {
+        if (legs == null || legs.isEmpty()) {
+            throw new IllegalArgumentException("An itinerary needs at least one leg");
+        }
+        for (int i = 1; i < legs.size(); i++) {
+            Departure previous = legs.get(i - 1);
+            Departure next = legs.get(i);
+            if (!previous.getDestination().getName().equals(next.getOrigin())) {
+                throw new IllegalArgumentException("Leg " + (i + 1) + " does not start where leg " + i + " ends");
+            }
+            if (next.getDepartureDateTime().isBefore(previous.getArrivalDateTime())) {
+                throw new IllegalArgumentException("Leg " + (i + 1) + " departs before leg " + i + " arrives");
+            }
+        }
+        this.legs = Collections.unmodifiableList(new ArrayList<>(legs));
+    }
+    
+    public static Itinerary direct(Departure departure) {
+        return new Itinerary(Collections.singletonList(departure));
+    }
+    
+    public List<Departure> getLegs() { return legs; }
+    public Departure getFirstLeg() { return legs.get(0); }
+    public Departure getLastLeg() { return legs.get(legs.size() - 1); }
+    public int getChanges() { return legs.size() - 1; }
+    public boolean isDirect() { return legs.size() == 1; }
+    
+    public String getOrigin() { return getFirstLeg().getOrigin(); }
+    public Destination getDestination() { return getLastLeg().getDestination(); }
+    public LocalDateTime getDepartureDateTime() { return getFirstLeg().getDepartureDateTime(); }
+    public LocalDateTime getArrivalDateTime() { return getLastLeg().getArrivalDateTime(); }
+    
+    public int getTotalMinutes() {
+        return (int) Duration.between(getDepartureDateTime(), getArrivalDateTime()).toMinutes();
+    }
+    
+    public String getFormattedDuration() {
+        int minutes = getTotalMinutes();
+        return (minutes / 60) + "h " + (minutes % 60) + "m";
+    }
+    
+    public double getPricePerPassenger() {
+        double total = 0;
+        for (Departure leg : legs) {
+            total += leg.getPricePerTicket();
+        }
+        return total;
+    }
+    
+    public double getTotalFare() {
+        double total = 0;
+        for (Departure leg : legs) {
+            total += leg.getTotalFare();
+        }
+        return total;
+    }
+    
+    public boolean hasLimitedSeats() {
+        for (Departure leg : legs) {
+            if (leg.hasLimitedSeats()) return true;
+        }
+        return false;
+    }
+    
+    public String getModes() {
+        StringBuilder modes = new StringBuilder();
+        TicketType previous = null;
+        for (Departure leg : legs) {
+            if (leg.getTicketType() != previous) {
+                if (modes.length() > 0) modes.append(" + ");
+                modes.append(leg.getTicketType().getDisplayName());
+                previous = leg.getTicketType();
+            }
+        }
+        return modes.toString();
+    }
+    
+    public String getChangeSummary() {
+        if (isDirect()) {
+            return "Direct";
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append(getChanges()).append(getChanges() == 1 ? " change via " : " changes via ");
+        for (int i = 0; i < legs.size() - 1; i++) {
+            if (i > 0) summary.append(", ");
+            summary.append(legs.get(i).getDestination().getName());
+        }
+        return summary.toString();
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Departure leg : legs) {
+            if (text.length() > 0) text.append(" | ");
+            text.append(leg);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,257 @@
+package ticketmachine.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Round-based (RAPTOR style) search over the timetable's stop patterns. Round k finds the best arrivals
+// using k legs, and every station keeps a bag of labels that are Pareto-optimal by arrival time, fare
+// and leg count.
+public final class JourneyPlanner {
+    
+    public static final int MAX_LEGS = 3;
+    private static final int SAME_MODE_CHANGE_MINUTES = 15;
+    private static final int CROSS_MODE_CHANGE_MINUTES = 30;
+    private static final int SEARCH_HORIZON_MINUTES = 24 * 60;
+    private static final int MODES = TicketType.values().length;
+    
+    private final Timetable timetable;
+    private final SeatInventory seatInventory;
+    private final int[] changeMinutes;
+    
+    public JourneyPlanner(Timetable timetable, SeatInventory seatInventory) {
+        if (timetable == null || seatInventory == null) {
+            throw new IllegalArgumentException("Timetable and seat inventory cannot be null");
+        }
+        this.timetable = timetable;
+        this.seatInventory = seatInventory;
+        
+        // Minimum connection time per station and mode pair; changing mode means walking between terminals
+        int stations = timetable.getStationCount();
+        this.changeMinutes = new int[stations * MODES * MODES];
+        for (int s = 0; s < stations; s++) {
+            for (int in = 0; in < MODES; in++) {
+                for (int out = 0; out < MODES; out++) {
+                    changeMinutes[(s * MODES + in) * MODES + out] =
+                            in == out ? SAME_MODE_CHANGE_MINUTES : CROSS_MODE_CHANGE_MINUTES;
+                }
+            }
+        }
+    }
+    
+    public Timetable getTimetable() { return timetable; }
+    public int getStationCount() { return timetable.getStationCount(); }
+    
+    public List<Itinerary> plan(String origin, String destination, String travelClass, int passengers,
+                                LocalDateTime after) {
+        if (origin == null || destination == null || after == null) {
+            throw new IllegalArgumentException("Origin, destination and time cannot be null");
+        }
+        if (passengers < 1) {
+            throw new IllegalArgumentException("Passenger count must be positive");
+        }
+        int source = timetable.stationId(origin);
+        int target = timetable.stationId(destination);
+        if (source < 0 || target < 0 || source == target) {
+            return new ArrayList<>();
+        }
+        int classIndex = Math.max(0, timetable.getFareMatrix().classIndex(travelClass));
+        int start = after.getHour() * 60 + after.getMinute();
+        
+        List<List<Label>> bags = new ArrayList<>(timetable.getStationCount());
+        for (int s = 0; s < timetable.getStationCount(); s++) {
+            bags.add(new ArrayList<>(2));
+        }
+        int[] remaining = legsToTarget(target);
+        List<Label> frontier = new ArrayList<>();
+        Label root = new Label(source, start, 0, 0, null, -1, -1, -1, -1, 0);
+        bags.get(source).add(root);
+        frontier.add(root);
+        
+        for (int round = 1; round <= MAX_LEGS && !frontier.isEmpty(); round++) {
+            List<Label> next = new ArrayList<>();
+            for (Label label : frontier) {
+                if (label.dominated) continue;
+                for (int k = timetable.servingFrom(label.station); k < timetable.servingTo(label.station); k++) {
+                    int p = timetable.servingPattern(k);
+                    int stop = timetable.servingStop(k);
+                    if (stop < timetable.pattern(p).size() - 1) {
+                        ride(label, p, stop, classIndex, start, target, remaining, bags, next);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        
+        List<Label> results = bags.get(target);
+        results.sort(Comparator.comparingInt((Label l) -> l.arrival)
+                .thenComparingDouble(l -> l.fare)
+                .thenComparingInt(l -> l.legs));
+        List<Itinerary> itineraries = new ArrayList<>(results.size());
+        for (Label label : results) {
+            itineraries.add(toItinerary(label, after.toLocalDate(), travelClass, classIndex, passengers));
+        }
+        return itineraries;
+    }
+    
+    // Boards the pattern and alights at every later stop. Fare is a criterion, so as in McRAPTOR a later
+    // trip is ridden too whenever it leaves at a cheaper peak factor than every earlier one that day
+    private void ride(Label label, int p, int stop, int classIndex, int start, int target, int[] remaining,
+                      List<List<Label>> bags, List<Label> next) {
+        Timetable.Pattern pattern = timetable.pattern(p);
+        // On the last leg only the target is worth alighting at
+        boolean lastLeg = label.legs + 1 == MAX_LEGS;
+        int first = lastLeg ? pattern.indexOf(target, stop + 1) : stop + 1;
+        if (first < 0) return;
+        int last = lastLeg ? first : pattern.size() - 1;
+        int ready = label.arrival;
+        if (label.pattern >= 0) {
+            int in = timetable.pattern(label.pattern).type.ordinal();
+            int out = pattern.type.ordinal();
+            ready += changeMinutes[(label.station * MODES + in) * MODES + out];
+        }
+        List<Label> best = bags.get(target);
+        // A trip still running from an earlier service day can be the earliest one, so try each day it covers
+        int today = ready / Timetable.MINUTES_PER_DAY;
+        for (int day = today - pattern.overnightDays(stop); day <= today + 1; day++) {
+            int offset = day * Timetable.MINUTES_PER_DAY;
+            double factor = Double.MAX_VALUE;
+            int trip = pattern.lowerBound(stop, ready - offset);
+            while (trip < pattern.tripCount) {
+                int departure = pattern.departure(trip, stop) + offset;
+                if (departure - start > SEARCH_HORIZON_MINUTES) break;
+                double tripFactor = Timetable.peakFactor(Math.floorMod(departure, Timetable.MINUTES_PER_DAY));
+                if (tripFactor < factor) {
+                    factor = tripFactor;
+                    for (int j = first; j <= last; j++) {
+                        int arrival = pattern.arrival(trip, j) + offset;
+                        // Later stops arrive later and cost more, so once the target beats one it beats the rest
+                        if (isDominated(best, arrival, label.fare, label.legs + 1)) break;
+                        int station = pattern.stops[j];
+                        if (label.legs + 1 + remaining[station] > MAX_LEGS || visits(label, station)) continue;
+                        double classFare = timetable.classFare(p, stop, j, classIndex);
+                        double fare = label.fare + Timetable.fare(classFare, departure);
+                        if (isDominated(best, arrival, fare, label.legs + 1)) continue;
+                        Label alighted = new Label(station, arrival, fare, label.legs + 1, label, p, trip, stop, j,
+                                day);
+                        if (insert(bags.get(station), alighted) && station != target) {
+                            next.add(alighted);
+                        }
+                    }
+                }
+                int cheaper = Timetable.cheaperFrom(pattern.departure(trip, stop));
+                if (cheaper < 0) break;
+                trip = pattern.lowerBound(stop, cheaper);
+            }
+        }
+    }
+    
+    // Fewest legs from each station to the target, ignoring times; stations further than MAX_LEGS
+    // are left at MAX_LEGS + 1 so their labels are never kept
+    private int[] legsToTarget(int target) {
+        int[] remaining = new int[timetable.getStationCount()];
+        Arrays.fill(remaining, MAX_LEGS + 1);
+        remaining[target] = 0;
+        List<Integer> reached = Collections.singletonList(target);
+        for (int legs = 1; legs < MAX_LEGS && !reached.isEmpty(); legs++) {
+            List<Integer> next = new ArrayList<>();
+            for (int station : reached) {
+                for (int k = timetable.servingFrom(station); k < timetable.servingTo(station); k++) {
+                    Timetable.Pattern pattern = timetable.pattern(timetable.servingPattern(k));
+                    for (int i = 0; i < timetable.servingStop(k); i++) {
+                        int before = pattern.stops[i];
+                        if (remaining[before] > legs) {
+                            remaining[before] = legs;
+                            next.add(before);
+                        }
+                    }
+                }
+            }
+            reached = next;
+        }
+        return remaining;
+    }
+    
+    private static boolean visits(Label label, int station) {
+        for (Label l = label; l != null; l = l.parent) {
+            if (l.station == station) return true;
+        }
+        return false;
+    }
+    
+    private static boolean dominates(Label a, Label b) {
+        return a.arrival <= b.arrival && a.fare <= b.fare && a.legs <= b.legs;
+    }
+    
+    private static boolean isDominated(List<Label> bag, int arrival, double fare, int legs) {
+        for (Label existing : bag) {
+            if (existing.arrival <= arrival && existing.fare <= fare && existing.legs <= legs) return true;
+        }
+        return false;
+    }
+    
+    private static boolean insert(List<Label> bag, Label label) {
+        if (isDominated(bag, label.arrival, label.fare, label.legs)) return false;
+        for (int i = bag.size() - 1; i >= 0; i--) {
+            Label existing = bag.get(i);
+            if (dominates(label, existing)) {
+                existing.dominated = true;
+                bag.remove(i);
+            }
+        }
+        bag.add(label);
+        return true;
+    }
+    
+    private Itinerary toItinerary(Label label, LocalDate searchDate, String travelClass, int classIndex,
+                                  int passengers) {
+        List<Departure> legs = new ArrayList<>(label.legs);
+        for (Label l = label; l.parent != null; l = l.parent) {
+            Timetable.Pattern pattern = timetable.pattern(l.pattern);
+            String origin = timetable.stationName(pattern.stops[l.boardStop]);
+            Destination destination = timetable.destination(l.pattern, l.boardStop, l.alightStop);
+            int departure = pattern.departure(l.trip, l.boardStop) + l.day * Timetable.MINUTES_PER_DAY;
+            LocalDate serviceDate = searchDate.plusDays(Math.floorDiv(departure, Timetable.MINUTES_PER_DAY));
+            int departureMinute = Math.floorMod(departure, Timetable.MINUTES_PER_DAY);
+            int available = seatInventory.available(DepartureKey.of(pattern.type, origin, destination,
+                    serviceDate.atStartOfDay().plusMinutes(departureMinute)));
+            double classFare = timetable.classFare(l.pattern, l.boardStop, l.alightStop, classIndex);
+            legs.add(new Departure(pattern.type, origin, destination, travelClass, passengers, serviceDate,
+                    departureMinute, l.arrival - departure, Timetable.fare(classFare, departure), available));
+        }
+        Collections.reverse(legs);
+        return new Itinerary(legs);
+    }
+    
+    private static final class Label {
+        final int station;
+        final int arrival;
+        final double fare;
+        final int legs;
+        final Label parent;
+        final int pattern;
+        final int trip;
+        final int boardStop;
+        final int alightStop;
+        final int day;
+        boolean dominated;
+        
+        Label(int station, int arrival, double fare, int legs, Label parent, int pattern, int trip,
+              int boardStop, int alightStop, int day) {
+            this.station = station;
+            this.arrival = arrival;
+            this.fare = fare;
+            this.legs = legs;
+            this.parent = parent;
+            this.pattern = pattern;
+            this.trip = trip;
+            this.boardStop = boardStop;
+            this.alightStop = alightStop;
+            this.day = day;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ticketmachine.model;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class OffHeapTicketHistory implements TicketHistory {
+    
+    public static final int MAX_SEATS = 16;
+    
+    private static final long RECORD_BYTES = 64;
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    
+    private static final long ID = 0;
+    private static final long PURCHASE_NANOS = 8;
+    private static final long DEPARTURE_MINUTE = 16;
+    private static final long ARRIVAL_MINUTE = 20;
+    private static final long PRICE = 24;
+    private static final long ORIGIN = 32;
+    private static final long DESTINATION = 36;
+    private static final long TRAVEL_CLASS = 40;
+    private static final long TYPE = 42;
+    private static final long QUANTITY = 43;
+    private static final long SEATS = 44;
+    
+    private static final TicketType[] TYPES = TicketType.values();
+    
+    private final TicketSigner signer;
+    private final Arena arena = Arena.ofShared();
+    private final Dictionary<String> stations = new Dictionary<>();
+    private final Dictionary<Destination> destinations = new Dictionary<>();
+    private final Dictionary<String> travelClasses = new Dictionary<>();
+    // Readers share the read side so close cannot free the arena under them
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    
+    private volatile MemorySegment[] chunks = new MemorySegment[0];
+    private volatile int size;
+    private boolean closed;
+    
+    public OffHeapTicketHistory() {
+        this(null);
+    }
+    
+    // Materialized tickets carry no passes, so they are re-signed on demand when a signer is given
+    public OffHeapTicketHistory(TicketSigner signer) {
+        this.signer = signer;
+    }
+    
+    @Override
+    public synchronized int add(Ticket ticket) {
+        if (ticket == null) {
+            throw new IllegalArgumentException("Ticket cannot be null");
+        }
+        if (ticket.getQuantity() > MAX_SEATS) {
+            throw new IllegalArgumentException("Off-heap history holds at most " + MAX_SEATS + " seats per ticket");
+        }
+        checkOpen();
+        int index = size;
+        int chunk = index >>> CHUNK_SHIFT;
+        MemorySegment[] current = chunks;
+        if (chunk == current.length) {
+            MemorySegment[] grown = new MemorySegment[chunk + 1];
+            System.arraycopy(current, 0, grown, 0, chunk);
+            grown[chunk] = arena.allocate(RECORD_BYTES * CHUNK_RECORDS, Long.BYTES);
+            chunks = current = grown;
+        }
+        MemorySegment record = current[chunk].asSlice((index & (CHUNK_RECORDS - 1)) * RECORD_BYTES, RECORD_BYTES);
+        
+        LocalDateTime purchased = ticket.getPurchaseTime();
+        record.set(ValueLayout.JAVA_LONG, ID, ticket.getId());
+        record.set(ValueLayout.JAVA_LONG, PURCHASE_NANOS,
+                purchased.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + purchased.getNano());
+        record.set(ValueLayout.JAVA_INT, DEPARTURE_MINUTE, (int) DepartureKey.toEpochMinute(ticket.getDepartureTime()));
+        record.set(ValueLayout.JAVA_INT, ARRIVAL_MINUTE, (int) DepartureKey.toEpochMinute(ticket.getArrivalTime()));
+        record.set(ValueLayout.JAVA_DOUBLE, PRICE, ticket.getPricePerTicket());
+        record.set(ValueLayout.JAVA_INT, ORIGIN, stations.intern(ticket.getOrigin()));
+        record.set(ValueLayout.JAVA_INT, DESTINATION, destinations.intern(ticket.getDestination()));
+        record.set(ValueLayout.JAVA_SHORT, TRAVEL_CLASS, (short) travelClasses.intern(ticket.getTravelClass()));
+        record.set(ValueLayout.JAVA_BYTE, TYPE, (byte) ticket.getTicketType().ordinal());
+        record.set(ValueLayout.JAVA_BYTE, QUANTITY, (byte) ticket.getQuantity());
+        int[] seats = ticket.getSeatIndexes();
+        for (int i = 0; i < seats.length; i++) {
+            record.set(ValueLayout.JAVA_BYTE, SEATS + i, (byte) seats[i]);
+        }
+        size = index + 1;
+        return index;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public Ticket get(int index) {
+        closeLock.readLock().lock();
+        try {
+            checkOpen();
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return read(index);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+    
+    private Ticket read(int index) {
+        MemorySegment chunk = chunks[index >>> CHUNK_SHIFT];
+        long base = (index & (CHUNK_RECORDS - 1)) * RECORD_BYTES;
+        
+        long purchaseNanos = chunk.get(ValueLayout.JAVA_LONG, base + PURCHASE_NANOS);
+        int quantity = chunk.get(ValueLayout.JAVA_BYTE, base + QUANTITY);
+        String[] seats = new String[quantity];
+        for (int i = 0; i < quantity; i++) {
+            int seat = chunk.get(ValueLayout.JAVA_BYTE, base + SEATS + i);
+            seats[i] = seat < 0 ? "N/A" : SeatInventory.seatLabel(seat);
+        }
+        Ticket ticket = new Ticket(
+                chunk.get(ValueLayout.JAVA_LONG, base + ID),
+                TYPES[chunk.get(ValueLayout.JAVA_BYTE, base + TYPE)],
+                stations.get(chunk.get(ValueLayout.JAVA_INT, base + ORIGIN)),
+                destinations.get(chunk.get(ValueLayout.JAVA_INT, base + DESTINATION)),
+                quantity,
+                travelClasses.get(chunk.get(ValueLayout.JAVA_SHORT, base + TRAVEL_CLASS)),
+                chunk.get(ValueLayout.JAVA_DOUBLE, base + PRICE),
+                LocalDateTime.ofEpochSecond(Math.floorDiv(purchaseNanos, 1_000_000_000L),
+                        (int) Math.floorMod(purchaseNanos, 1_000_000_000L), ZoneOffset.UTC),
+                DepartureKey.fromEpochMinute(chunk.get(ValueLayout.JAVA_INT, base + DEPARTURE_MINUTE)),
+                DepartureKey.fromEpochMinute(chunk.get(ValueLayout.JAVA_INT, base + ARRIVAL_MINUTE)),
+                seats
+        );
+        if (signer != null) {
+            ticket.attachSigner(signer);
+        }
+        return ticket;
+    }
+    
+    public long getReservedBytes() {
+        return chunks.length * RECORD_BYTES * CHUNK_RECORDS;
+    }
+    
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Ticket history is closed");
+        }
+    }
+    
+    // Frees the records; tickets already read stay valid, but views from asList must not outlive the store
+    @Override
+    public synchronized void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            chunks = new MemorySegment[0];
+            size = 0;
+            arena.close();
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+    
+    private static final class Dictionary<T> {
+        
+        private final List<T> values = new CopyOnWriteArrayList<>();
+        private final Map<T, Integer> index = new ConcurrentHashMap<>();
+        
+        int intern(T value) {
+            Integer existing = index.get(value);
+            if (existing != null) return existing;
+            values.add(value);
+            int id = values.size() - 1;
+            index.put(value, id);
+            return id;
+        }
+        
+        T get(int id) {
+            return values.get(id);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package ticketmachine.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+public class PurchaseJournal implements AutoCloseable {
+    
+    public static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+    
+    private static final String SEGMENT_PREFIX = "purchases-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final TicketType[] TYPES = TicketType.values();
+    
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_BYTES));
+    
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean groupCommit;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition syncFinished = lock.newCondition();
+    private final LongAdder appendCount = new LongAdder();
+    private final LongAdder syncCount = new LongAdder();
+    
+    private FileChannel channel;
+    private int segmentNumber;
+    private long segmentSize;
+    private long writtenSequence;
+    private long syncedSequence;
+    private long syncedSize;
+    private boolean syncing;
+    private IOException syncFailure;
+    private long lostRecords;
+    private IOException unrecoverable;
+    private boolean closed;
+    
+    public PurchaseJournal(Path directory, long segmentBytes, boolean groupCommit) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Journal directory cannot be null");
+        }
+        if (segmentBytes < MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Segment size must be at least " + MAX_RECORD_BYTES + " bytes");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.groupCommit = groupCommit;
+        
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            if (segments.isEmpty()) {
+                openSegment(1);
+            } else {
+                Path last = segments.get(segments.size() - 1);
+                long validLength = scan(last, null);
+                openSegment(segmentNumberOf(last));
+                if (validLength < channel.size()) {
+                    channel.truncate(validLength);
+                    channel.force(true);
+                }
+                segmentSize = validLength;
+                syncedSize = validLength;
+                channel.position(validLength);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open purchase journal in " + directory, e);
+        }
+    }
+    
+    public void replay(Consumer<Ticket> consumer) {
+        try {
+            for (Path segment : listSegments()) {
+                scan(segment, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay purchase journal in " + directory, e);
+        }
+    }
+    
+    public void append(Ticket ticket) {
+        ByteBuffer record = encode(ticket);
+        int length = record.remaining();
+        lock.lock();
+        try {
+            // New records wait until every appender that lost a record to a failed sync has been told
+            while (syncFailure != null || (syncing && segmentSize + length > segmentBytes)) {
+                syncFinished.awaitUninterruptibly();
+            }
+            if (closed) {
+                throw new IllegalStateException("Purchase journal is closed");
+            }
+            if (unrecoverable != null) {
+                throw new UncheckedIOException("Purchase journal could not be repaired", unrecoverable);
+            }
+            if (segmentSize + length > segmentBytes) {
+                rollSegment();
+            }
+            long start = segmentSize;
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                if (!groupCommit) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                // The sale is aborted, so its bytes must not be replayed on the next start
+                truncate(start);
+                throw e;
+            }
+            segmentSize = start + length;
+            long sequence = ++writtenSequence;
+            appendCount.increment();
+            
+            if (!groupCommit) {
+                syncedSequence = sequence;
+                syncedSize = segmentSize;
+                syncCount.increment();
+                return;
+            }
+            awaitSync(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to purchase journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void awaitSync(long sequence) throws IOException {
+        while (syncedSequence < sequence) {
+            if (syncFailure != null) {
+                IOException failure = syncFailure;
+                if (--lostRecords == 0) {
+                    syncFailure = null;
+                    syncFinished.signalAll();
+                }
+                throw failure;
+            }
+            if (syncing) {
+                syncFinished.awaitUninterruptibly();
+                continue;
+            }
+            syncing = true;
+            long target = writtenSequence;
+            long targetSize = segmentSize;
+            FileChannel current = channel;
+            lock.unlock();
+            IOException failure = null;
+            try {
+                current.force(false);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                lock.lock();
+                syncing = false;
+            }
+            if (failure != null) {
+                discardUnsynced(failure);
+            } else {
+                syncedSequence = Math.max(syncedSequence, target);
+                syncedSize = Math.max(syncedSize, targetSize);
+                syncCount.increment();
+            }
+            syncFinished.signalAll();
+        }
+    }
+    
+    // Cuts every record written since the last good sync; each of their appenders then reports the failure
+    private void discardUnsynced(IOException failure) {
+        lostRecords = writtenSequence - syncedSequence;
+        writtenSequence = syncedSequence;
+        if (lostRecords > 0) {
+            syncFailure = failure;
+        }
+        truncate(syncedSize);
+    }
+    
+    private void truncate(long size) {
+        try {
+            // Not forced here: the next successful sync persists the shorter length along with its record
+            channel.truncate(size);
+            channel.position(size);
+            segmentSize = size;
+        } catch (IOException e) {
+            // The segment may still hold aborted sales, so refuse to add more until someone looks at it
+            unrecoverable = e;
+        }
+    }
+    
+    // Callers hold the lock with no sync in flight, so only one appender can roll a full segment
+    private void rollSegment() throws IOException {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            discardUnsynced(e);
+            syncFinished.signalAll();
+            throw e;
+        }
+        syncedSequence = writtenSequence;
+        syncCount.increment();
+        channel.close();
+        openSegment(segmentNumber + 1);
+    }
+    
+    private void openSegment(int number) throws IOException {
+        this.segmentNumber = number;
+        this.channel = FileChannel.open(directory.resolve(segmentName(number)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        this.segmentSize = channel.size();
+        this.syncedSize = segmentSize;
+        channel.position(segmentSize);
+    }
+    
+    private long scan(Path segment, Consumer<Ticket> consumer) throws IOException {
+        long position = 0;
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            ByteBuffer payload = ByteBuffer.allocate(MAX_RECORD_BYTES);
+            CRC32C crc = new CRC32C();
+            while (true) {
+                header.clear();
+                if (readFully(in, header, position) < HEADER_BYTES) break;
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                
+                payload.clear().limit(length);
+                if (readFully(in, payload, position + HEADER_BYTES) < length) break;
+                payload.flip();
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) break;
+                
+                if (consumer != null) {
+                    consumer.accept(decode(payload));
+                }
+                position += HEADER_BYTES + length;
+            }
+        }
+        return position;
+    }
+    
+    private static int readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position + total);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
+    }
+    
+    private static ByteBuffer encode(Ticket ticket) {
+        ByteBuffer buffer = ENCODE_BUFFER.get();
+        buffer.clear().position(HEADER_BYTES);
+        buffer.putLong(ticket.getId());
+        buffer.put((byte) ticket.getTicketType().ordinal());
+        putString(buffer, ticket.getOrigin());
+        putString(buffer, ticket.getDestination().getName());
+        buffer.putDouble(ticket.getDestination().getDistanceKm());
+        buffer.put((byte) ticket.getQuantity());
+        putString(buffer, ticket.getTravelClass());
+        buffer.putDouble(ticket.getPricePerTicket());
+        buffer.putLong(toEpochNanos(ticket.getPurchaseTime()));
+        buffer.putLong(DepartureKey.toEpochMinute(ticket.getDepartureTime()));
+        buffer.putLong(DepartureKey.toEpochMinute(ticket.getArrivalTime()));
+        int[] seats = ticket.getSeatIndexes();
+        buffer.put((byte) seats.length);
+        for (int seat : seats) {
+            buffer.put((byte) seat);
+        }
+        
+        int length = buffer.position() - HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_BYTES, length);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.flip();
+    }
+    
+    private static Ticket decode(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        TicketType type = TYPES[buffer.get()];
+        String origin = getString(buffer);
+        String destinationName = getString(buffer);
+        Destination destination = new Destination(destinationName, buffer.getDouble());
+        int quantity = buffer.get();
+        String travelClass = getString(buffer);
+        double pricePerTicket = buffer.getDouble();
+        LocalDateTime purchaseTime = fromEpochNanos(buffer.getLong());
+        LocalDateTime departureTime = DepartureKey.fromEpochMinute(buffer.getLong());
+        LocalDateTime arrivalTime = DepartureKey.fromEpochMinute(buffer.getLong());
+        String[] seats = new String[buffer.get()];
+        for (int i = 0; i < seats.length; i++) {
+            int seat = buffer.get();
+            seats[i] = seat < 0 ? "N/A" : SeatInventory.seatLabel(seat);
+        }
+        return new Ticket(id, type, origin, destination, quantity, travelClass, pricePerTicket,
+                purchaseTime, departureTime, arrivalTime, seats);
+    }
+    
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+    
+    private static long toEpochNanos(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+    }
+    
+    private static LocalDateTime fromEpochNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+    
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+    
+    private static String segmentName(int number) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+    
+    private static int segmentNumberOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    public boolean isGroupCommit() { return groupCommit; }
+    public long getAppendCount() { return appendCount.sum(); }
+    public long getSyncCount() { return syncCount.sum(); }
+    
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            while (syncing) {
+                syncFinished.awaitUninterruptibly();
+            }
+            try {
+                channel.force(false);
+                // Parked appenders must see their records as synced rather than lead a sync on a closed channel
+                syncedSequence = writtenSequence;
+                syncedSize = segmentSize;
+                syncCount.increment();
+            } catch (IOException e) {
+                discardUnsynced(e);
+                throw e;
+            } finally {
+                syncFinished.signalAll();
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close purchase journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
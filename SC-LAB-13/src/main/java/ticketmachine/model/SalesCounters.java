@@ -0,0 +1,204 @@
+package ticketmachine.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SalesCounters {
+    
+    public enum Window {
+        MINUTE(60_000L),
+        HOUR(3_600_000L),
+        DAY(86_400_000L);
+        
+        private final long millis;
+        
+        Window(long millis) {
+            this.millis = millis;
+        }
+        
+        public long getMillis() { return millis; }
+        
+        long startOf(long epochMillis) {
+            return epochMillis - Math.floorMod(epochMillis, millis);
+        }
+    }
+    
+    private static final Window[] WINDOWS = Window.values();
+    
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+    
+    public void record(Ticket ticket) {
+        Key key = new Key(ticket.getOrigin(), ticket.getDestination().getName(),
+                ticket.getTicketType(), ticket.getTravelClass());
+        Counters counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new Counters());
+        }
+        long purchasedAt = ticket.getPurchaseTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+        counter.record(purchasedAt, ticket.getQuantity(), (long) ticket.getTotalPrice());
+    }
+    
+    public SalesTotals getTotals(String origin, Destination destination, TicketType type, String travelClass) {
+        SalesTotals totals = SalesTotals.EMPTY;
+        for (Map.Entry<Key, Counters> entry : counters.entrySet()) {
+            if (entry.getKey().matches(origin, destination, type, travelClass)) {
+                totals = totals.plus(entry.getValue().total.snapshot());
+            }
+        }
+        return totals;
+    }
+    
+    public SalesTotals getWindowTotals(Window window, String origin, Destination destination,
+                                       TicketType type, String travelClass) {
+        return windowTotals(window, 0, origin, destination, type, travelClass);
+    }
+    
+    public SalesTotals getPreviousWindowTotals(Window window, String origin, Destination destination,
+                                               TicketType type, String travelClass) {
+        return windowTotals(window, 1, origin, destination, type, travelClass);
+    }
+    
+    private SalesTotals windowTotals(Window window, int windowsAgo, String origin, Destination destination,
+                                     TicketType type, String travelClass) {
+        if (window == null) {
+            throw new IllegalArgumentException("Window cannot be null");
+        }
+        long now = LocalDateTime.now().toInstant(ZoneOffset.UTC).toEpochMilli();
+        long start = window.startOf(now) - windowsAgo * window.millis;
+        SalesTotals totals = SalesTotals.EMPTY;
+        for (Map.Entry<Key, Counters> entry : counters.entrySet()) {
+            if (entry.getKey().matches(origin, destination, type, travelClass)) {
+                Bucket bucket = entry.getValue().windows[window.ordinal()].bucketFor(start);
+                if (bucket != null) {
+                    totals = totals.plus(bucket.snapshot());
+                }
+            }
+        }
+        return totals;
+    }
+    
+    private static final class Counters {
+        
+        final Bucket total = new Bucket(0, null);
+        final TumblingWindow[] windows = new TumblingWindow[WINDOWS.length];
+        
+        Counters() {
+            for (Window window : WINDOWS) {
+                windows[window.ordinal()] = new TumblingWindow(window);
+            }
+        }
+        
+        void record(long epochMillis, int passengers, long revenue) {
+            total.add(passengers, revenue);
+            for (TumblingWindow window : windows) {
+                window.record(epochMillis, passengers, revenue);
+            }
+        }
+    }
+    
+    private static final class TumblingWindow {
+        
+        private final Window window;
+        private final AtomicReference<Bucket> current = new AtomicReference<>(new Bucket(Long.MIN_VALUE, null));
+        
+        TumblingWindow(Window window) {
+            this.window = window;
+        }
+        
+        void record(long epochMillis, int passengers, long revenue) {
+            long start = window.startOf(epochMillis);
+            Bucket bucket = current.get();
+            while (bucket.start < start) {
+                Bucket next = new Bucket(start, bucket.start == start - window.millis ? bucket : null);
+                if (current.compareAndSet(bucket, next)) {
+                    bucket.previous = null;
+                    bucket = next;
+                } else {
+                    bucket = current.get();
+                }
+            }
+            if (bucket.start == start) {
+                bucket.add(passengers, revenue);
+            } else {
+                Bucket previous = bucket.previous;
+                if (previous != null && previous.start == start) {
+                    previous.add(passengers, revenue);
+                }
+            }
+        }
+        
+        Bucket bucketFor(long start) {
+            Bucket bucket = current.get();
+            if (bucket.start == start) return bucket;
+            Bucket previous = bucket.previous;
+            return previous != null && previous.start == start ? previous : null;
+        }
+    }
+    
+    private static final class Bucket {
+        
+        final long start;
+        volatile Bucket previous;
+        final LongAdder tickets = new LongAdder();
+        final LongAdder passengers = new LongAdder();
+        final LongAdder revenue = new LongAdder();
+        
+        Bucket(long start, Bucket previous) {
+            this.start = start;
+            this.previous = previous;
+        }
+        
+        void add(int passengerCount, long revenuePKR) {
+            tickets.increment();
+            passengers.add(passengerCount);
+            revenue.add(revenuePKR);
+        }
+        
+        SalesTotals snapshot() {
+            return new SalesTotals(tickets.sum(), passengers.sum(), revenue.sum());
+        }
+    }
+    
+    private static final class Key {
+        
+        final String origin;
+        final String destination;
+        final TicketType type;
+        final String travelClass;
+        final int hash;
+        
+        Key(String origin, String destination, TicketType type, String travelClass) {
+            this.origin = origin;
+            this.destination = destination;
+            this.type = type;
+            this.travelClass = travelClass;
+            this.hash = Objects.hash(origin, destination, type, travelClass);
+        }
+        
+        boolean matches(String origin, Destination destination, TicketType type, String travelClass) {
+            return (origin == null || origin.equals(this.origin))
+                    && (destination == null || destination.getName().equals(this.destination))
+                    && (type == null || type == this.type)
+                    && (travelClass == null || travelClass.equals(this.travelClass));
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key that = (Key) obj;
+            return type == that.type && origin.equals(that.origin) && destination.equals(that.destination)
+                    && travelClass.equals(that.travelClass);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ticketmachine.model;
+
+public final class SalesTotals {
+    
+    public static final SalesTotals EMPTY = new SalesTotals(0, 0, 0);
+    
+    private final long ticketsSold;
+    private final long passengers;
+    private final long revenuePKR;
+    
+    public SalesTotals(long ticketsSold, long passengers, long revenuePKR) {
+        this.ticketsSold = ticketsSold;
+        this.passengers = passengers;
+        this.revenuePKR = revenuePKR;
+    }
+    
+    public SalesTotals plus(SalesTotals other) {
+        return new SalesTotals(ticketsSold + other.ticketsSold, passengers + other.passengers,
+                revenuePKR + other.revenuePKR);
+    }
+    
+    public long getTicketsSold() { return ticketsSold; }
+    public long getPassengers() { return passengers; }
+    public long getRevenuePKR() { return revenuePKR; }
+    
+    public String getFormattedRevenue() {
+        return Destination.formatPKR(revenuePKR);
+    }
+    
+    @Override
+    public String toString() {
+        return ticketsSold + " ticket(s), " + passengers + " passenger(s), " + getFormattedRevenue();
+    }
+}
@@ -0,0 +1,175 @@
+package ticketmachine.model;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class SeatInventory {
+    
+    public static final int ROWS = 20;
+    public static final int SEATS_PER_ROW = 4;
+    public static final int CAPACITY = ROWS * SEATS_PER_ROW;
+    
+    private static final int WORDS = (CAPACITY + 63) / 64;
+    private static final long PURGE_INTERVAL_MINUTES = 60;
+    private static final long RETENTION_MINUTES = 24 * 60;
+    
+    private static final SeatInventory LOCAL = new SeatInventory();
+    
+    private final ConcurrentHashMap<DepartureKey, AtomicLongArray> departures = new ConcurrentHashMap<>();
+    private final AtomicLong lastPurgeMinute = new AtomicLong();
+    
+    public static SeatInventory local() {
+        return LOCAL;
+    }
+    
+    public int[] reserve(DepartureKey departure, int count) {
+        if (departure == null) {
+            throw new IllegalArgumentException("Departure cannot be null");
+        }
+        if (count < 1 || count > CAPACITY) {
+            throw new IllegalArgumentException("Seat count must be between 1 and " + CAPACITY);
+        }
+        purgeDeparted();
+        AtomicLongArray seats = departures.computeIfAbsent(departure, k -> new AtomicLongArray(WORDS));
+        
+        if (count <= 64) {
+            int start = reserveBlock(seats, count, rowAlignedStarts(count));
+            if (start < 0) {
+                start = reserveBlock(seats, count, -1L);
+            }
+            if (start >= 0) {
+                int[] result = new int[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = start + i;
+                }
+                return result;
+            }
+        }
+        return reserveScattered(seats, count);
+    }
+    
+    public void markReserved(DepartureKey departure, int[] seatIndexes) {
+        AtomicLongArray seats = departures.computeIfAbsent(departure, k -> new AtomicLongArray(WORDS));
+        for (int seat : seatIndexes) {
+            if (seat >= 0 && seat < CAPACITY) {
+                seats.getAndAccumulate(seat >>> 6, 1L << seat, (w, bit) -> w | bit);
+            }
+        }
+    }
+    
+    public void release(DepartureKey departure, int[] seatIndexes) {
+        AtomicLongArray seats = departures.get(departure);
+        if (seats != null) {
+            clear(seats, seatIndexes, seatIndexes.length);
+        }
+    }
+    
+    public int available(DepartureKey departure) {
+        AtomicLongArray seats = departures.get(departure);
+        if (seats == null) return CAPACITY;
+        int taken = 0;
+        for (int i = 0; i < WORDS; i++) {
+            taken += Long.bitCount(seats.get(i));
+        }
+        return CAPACITY - taken;
+    }
+    
+    private static int reserveBlock(AtomicLongArray seats, int count, long allowedStarts) {
+        long block = count == 64 ? -1L : (1L << count) - 1;
+        for (int i = 0; i < WORDS; i++) {
+            while (true) {
+                long word = seats.get(i);
+                long runs = ~word & validMask(i);
+                for (int shift = 1; shift < count && runs != 0; shift++) {
+                    runs &= runs >>> 1;
+                }
+                runs &= allowedStarts;
+                if (runs == 0) break;
+                int start = Long.numberOfTrailingZeros(runs);
+                if (seats.compareAndSet(i, word, word | (block << start))) {
+                    return (i << 6) + start;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    private static int[] reserveScattered(AtomicLongArray seats, int count) {
+        int[] result = new int[count];
+        int reserved = 0;
+        for (int i = 0; i < WORDS && reserved < count; i++) {
+            while (reserved < count) {
+                long word = seats.get(i);
+                long free = ~word & validMask(i);
+                if (free == 0) break;
+                long bit = Long.lowestOneBit(free);
+                if (seats.compareAndSet(i, word, word | bit)) {
+                    result[reserved++] = (i << 6) + Long.numberOfTrailingZeros(bit);
+                }
+            }
+        }
+        if (reserved < count) {
+            clear(seats, result, reserved);
+            return null;
+        }
+        return result;
+    }
+    
+    private static void clear(AtomicLongArray seats, int[] seatIndexes, int length) {
+        for (int i = 0; i < length; i++) {
+            int seat = seatIndexes[i];
+            if (seat < 0 || seat >= CAPACITY) continue;
+            seats.getAndAccumulate(seat >>> 6, ~(1L << seat), (w, mask) -> w & mask);
+        }
+    }
+    
+    private static long validMask(int word) {
+        int bits = Math.min(64, CAPACITY - (word << 6));
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+    
+    private static long rowAlignedStarts(int count) {
+        long starts = 0;
+        for (int bit = 0; bit < 64; bit += SEATS_PER_ROW) {
+            if (count <= SEATS_PER_ROW) {
+                for (int offset = 0; offset + count <= SEATS_PER_ROW; offset++) {
+                    starts |= 1L << (bit + offset);
+                }
+            } else {
+                starts |= 1L << bit;
+            }
+        }
+        return starts;
+    }
+    
+    private void purgeDeparted() {
+        long now = DepartureKey.toEpochMinute(LocalDateTime.now());
+        long last = lastPurgeMinute.get();
+        if (now - last < PURGE_INTERVAL_MINUTES || !lastPurgeMinute.compareAndSet(last, now)) {
+            return;
+        }
+        long cutoff = now - RETENTION_MINUTES;
+        departures.keySet().removeIf(key -> key.getDepartureMinute() < cutoff);
+    }
+    
+    public static String seatLabel(int seatIndex) {
+        int row = seatIndex / SEATS_PER_ROW + 1;
+        char seat = (char) ('A' + seatIndex % SEATS_PER_ROW);
+        return row + "-" + seat;
+    }
+    
+    public static int seatIndex(String label) {
+        int dash = label == null ? -1 : label.indexOf('-');
+        if (dash < 1 || dash != label.length() - 2) return -1;
+        try {
+            int row = Integer.parseInt(label.substring(0, dash));
+            int seat = label.charAt(dash + 1) - 'A';
+            if (row < 1 || row > ROWS || seat < 0 || seat >= SEATS_PER_ROW) return -1;
+            return (row - 1) * SEATS_PER_ROW + seat;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
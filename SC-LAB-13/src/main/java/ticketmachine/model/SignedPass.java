@@ -0,0 +1,90 @@
+package ticketmachine.model;
+
+import java.nio.ByteBuffer;
+
+public final class SignedPass {
+    
+    public static final int FORMAT_VERSION = 1;
+    public static final int PAYLOAD_BYTES = 20;
+    public static final int SIGNATURE_BYTES = 64;
+    public static final int ENCODED_BYTES = PAYLOAD_BYTES + SIGNATURE_BYTES;
+    
+    private final long ticketId;
+    private final int routeCode;
+    private final long departureMinute;
+    private final int seatIndex;
+    private final int passengerNumber;
+    
+    private SignedPass(long ticketId, int routeCode, long departureMinute, int seatIndex, int passengerNumber) {
+        this.ticketId = ticketId;
+        this.routeCode = routeCode;
+        this.departureMinute = departureMinute;
+        this.seatIndex = seatIndex;
+        this.passengerNumber = passengerNumber;
+    }
+    
+    // Layout: version(1) id(8) route(4) departure minute(4) seat(2) passenger(1), then the signature
+    static byte[] encodePayload(Ticket ticket, int passengerNumber) {
+        if (passengerNumber < 1 || passengerNumber > ticket.getQuantity() || passengerNumber > 0xFF) {
+            throw new IllegalArgumentException("Invalid passenger number: " + passengerNumber);
+        }
+        String seat = ticket.getSeatNumber(passengerNumber - 1);
+        int seatIndex = "N/A".equals(seat) ? 0xFFFF : SeatInventory.seatIndex(seat);
+        byte[] encoded = new byte[ENCODED_BYTES];
+        ByteBuffer.wrap(encoded)
+                .put((byte) FORMAT_VERSION)
+                .putLong(ticket.getId())
+                .putInt(routeCode(ticket.getTicketType(), ticket.getOrigin(), ticket.getDestination().getName()))
+                .putInt((int) DepartureKey.toEpochMinute(ticket.getDepartureTime()))
+                .putShort((short) seatIndex)
+                .put((byte) passengerNumber);
+        return encoded;
+    }
+    
+    static SignedPass decodePayload(byte[] encoded) {
+        if (encoded == null || encoded.length != ENCODED_BYTES || encoded[0] != FORMAT_VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(encoded, 1, PAYLOAD_BYTES - 1);
+        long ticketId = buffer.getLong();
+        int routeCode = buffer.getInt();
+        long departureMinute = Integer.toUnsignedLong(buffer.getInt());
+        int seatIndex = Short.toUnsignedInt(buffer.getShort());
+        int passengerNumber = Byte.toUnsignedInt(buffer.get());
+        return new SignedPass(ticketId, routeCode, departureMinute, seatIndex, passengerNumber);
+    }
+    
+    // String.hashCode is specified, so kiosks and offline validators agree without sharing a catalog
+    public static int routeCode(TicketType ticketType, String origin, String destination) {
+        return (31 * ticketType.ordinal() + origin.hashCode()) * 31 + destination.hashCode();
+    }
+    
+    public static int routeCode(DepartureKey departure) {
+        return routeCode(departure.getTicketType(), departure.getOrigin(), departure.getDestination());
+    }
+    
+    public boolean matches(DepartureKey departure) {
+        return departure != null
+                && routeCode == routeCode(departure)
+                && departureMinute == departure.getDepartureMinute();
+    }
+    
+    public long getTicketId() { return ticketId; }
+    public int getRouteCode() { return routeCode; }
+    public long getDepartureMinute() { return departureMinute; }
+    public int getPassengerNumber() { return passengerNumber; }
+    
+    public String getSeatNumber() {
+        return seatIndex == 0xFFFF ? "N/A" : SeatInventory.seatLabel(seatIndex);
+    }
+    
+    public String getPassengerCode() {
+        return TicketIdAllocator.format(ticketId) + "P" + passengerNumber;
+    }
+    
+    @Override
+    public String toString() {
+        return getPassengerCode() + " seat " + getSeatNumber() + " departing "
+                + DepartureKey.fromEpochMinute(departureMinute);
+    }
+}
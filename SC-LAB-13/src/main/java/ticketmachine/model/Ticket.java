@@ -2,24 +2,20 @@ package ticketmachine.model;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Objects;
-import java.util.Random;
+import java.util.Locale;
 
 public class Ticket {
     
-    private static int ticketCounter = 0;
-    private static final Object COUNTER_LOCK = new Object();
-    
     private static final DateTimeFormatter DISPLAY_FORMATTER = 
-            DateTimeFormatter.ofPattern("dd MMM yyyy, HH:mm");
+            DateTimeFormatter.ofPattern("dd MMM yyyy, HH:mm", Locale.ENGLISH);
     
     private static final DateTimeFormatter DATE_ONLY_FORMATTER = 
-            DateTimeFormatter.ofPattern("dd MMM yyyy");
+            DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.ENGLISH);
     
     private static final DateTimeFormatter TIME_FORMATTER = 
-            DateTimeFormatter.ofPattern("HH:mm");
+            DateTimeFormatter.ofPattern("HH:mm", Locale.ENGLISH);
     
-    private final String ticketId;
+    private final long ticketId;
     private final TicketType ticketType;
     private final String origin;
     private final Destination destination;
@@ -31,9 +27,32 @@ public class Ticket {
     private final LocalDateTime departureTime;
     private final LocalDateTime arrivalTime;
     private final String[] seatNumbers;
+    private volatile byte[][] signedPasses;
+    private volatile TicketSigner signer;
     
     public Ticket(TicketType ticketType, String origin, Destination destination, 
                   int quantity, String travelClass) {
+        this(ticketType, origin, destination, quantity, travelClass,
+                destination != null && ticketType != null ? destination.calculatePrice(ticketType) : 0.0);
+    }
+    
+    public Ticket(TicketType ticketType, String origin, Destination destination,
+                  int quantity, String travelClass, double pricePerTicket) {
+        this(TicketIdAllocator.local().nextId(), ticketType, origin, destination,
+                quantity, travelClass, pricePerTicket, SeatInventory.local());
+    }
+    
+    public Ticket(long ticketId, TicketType ticketType, String origin, Destination destination,
+                  int quantity, String travelClass, double pricePerTicket, SeatInventory seatInventory) {
+        this(ticketId, ticketType, origin, destination, quantity, travelClass, pricePerTicket,
+                nextDepartureTime(),
+                destination != null && ticketType != null ? Departure.travelMinutes(ticketType, destination) : 0,
+                seatInventory);
+    }
+    
+    public Ticket(long ticketId, TicketType ticketType, String origin, Destination destination,
+                  int quantity, String travelClass, double pricePerTicket, LocalDateTime departureTime,
+                  int travelMinutes, SeatInventory seatInventory) {
         if (ticketType == null) {
             throw new IllegalArgumentException("Ticket type cannot be null");
         }
@@ -46,6 +65,18 @@ public class Ticket {
         if (quantity < 1) {
             throw new IllegalArgumentException("Quantity must be at least 1");
         }
+        if (pricePerTicket < 0) {
+            throw new IllegalArgumentException("Price cannot be negative");
+        }
+        if (seatInventory == null) {
+            throw new IllegalArgumentException("Seat inventory cannot be null");
+        }
+        if (departureTime == null) {
+            throw new IllegalArgumentException("Departure time cannot be null");
+        }
+        if (travelMinutes < 0) {
+            throw new IllegalArgumentException("Travel time cannot be negative");
+        }
         
         this.ticketType = ticketType;
         this.origin = origin.trim();
@@ -53,27 +84,34 @@ public class Ticket {
         this.quantity = quantity;
         this.travelClass = travelClass != null ? travelClass : "Economy";
         this.purchaseTime = LocalDateTime.now();
-        this.ticketId = generateTicketId();
-        this.pricePerTicket = destination.calculatePrice(ticketType);
+        this.ticketId = ticketId;
+        this.pricePerTicket = pricePerTicket;
         this.totalPrice = Math.round(pricePerTicket * quantity);
         
-        this.departureTime = generateDepartureTime();
-        
-        double avgSpeed = ticketType == TicketType.TRAIN ? 80.0 : 60.0;
-        int travelMinutes = (int) Math.round((destination.getDistanceKm() / avgSpeed) * 60);
+        this.departureTime = departureTime;
         this.arrivalTime = departureTime.plusMinutes(travelMinutes);
         
-        this.seatNumbers = generateSeatNumbers(quantity);
+        this.seatNumbers = reserveSeats(seatInventory, quantity);
     }
     
-    private String generateTicketId() {
-        synchronized (COUNTER_LOCK) {
-            ticketCounter++;
-            return String.format("PK%04d", ticketCounter);
-        }
+    Ticket(long ticketId, TicketType ticketType, String origin, Destination destination,
+           int quantity, String travelClass, double pricePerTicket, LocalDateTime purchaseTime,
+           LocalDateTime departureTime, LocalDateTime arrivalTime, String[] seatNumbers) {
+        this.ticketId = ticketId;
+        this.ticketType = ticketType;
+        this.origin = origin;
+        this.destination = destination;
+        this.quantity = quantity;
+        this.travelClass = travelClass;
+        this.pricePerTicket = pricePerTicket;
+        this.totalPrice = Math.round(pricePerTicket * quantity);
+        this.purchaseTime = purchaseTime;
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+        this.seatNumbers = seatNumbers;
     }
     
-    private LocalDateTime generateDepartureTime() {
+    private static LocalDateTime nextDepartureTime() {
         LocalDateTime now = LocalDateTime.now();
         int minute = now.getMinute();
         int roundedMinute = (minute < 30) ? 30 : 0;
@@ -84,13 +122,15 @@ public class Ticket {
         return rounded.plusHours(1);
     }
     
-    private String[] generateSeatNumbers(int count) {
+    private String[] reserveSeats(SeatInventory seatInventory, int count) {
+        int[] reserved = seatInventory.reserve(
+                DepartureKey.of(ticketType, origin, destination, departureTime), count);
+        if (reserved == null) {
+            throw new IllegalStateException("Not enough seats available on this departure");
+        }
         String[] seats = new String[count];
-        Random rand = new Random();
         for (int i = 0; i < count; i++) {
-            int row = rand.nextInt(20) + 1;
-            char seat = (char) ('A' + rand.nextInt(4));
-            seats[i] = row + "-" + seat;
+            seats[i] = SeatInventory.seatLabel(reserved[i]);
         }
         return seats;
     }
@@ -110,11 +150,20 @@ public class Ticket {
         return "N/A";
     }
     
+    public int[] getSeatIndexes() {
+        int[] indexes = new int[seatNumbers.length];
+        for (int i = 0; i < seatNumbers.length; i++) {
+            indexes[i] = SeatInventory.seatIndex(seatNumbers[i]);
+        }
+        return indexes;
+    }
+    
     public String getFormattedSeats() {
         return String.join(", ", seatNumbers);
     }
     
-    public String getTicketId() { return ticketId; }
+    public long getId() { return ticketId; }
+    public String getTicketId() { return TicketIdAllocator.format(ticketId); }
     public TicketType getTicketType() { return ticketType; }
     public String getOrigin() { return origin; }
     public Destination getDestination() { return destination; }
@@ -143,15 +192,41 @@ public class Ticket {
         long hours = minutes / 60;
         long mins = minutes % 60;
         if (hours > 0) {
-            return String.format("%dh %dm", hours, mins);
+            return String.format(Locale.ENGLISH, "%dh %dm", hours, mins);
         }
-        return String.format("%dm", mins);
+        return String.format(Locale.ENGLISH, "%dm", mins);
     }
     
     public String getFormattedPrice() {
         return Destination.formatPKR(totalPrice);
     }
     
+    public String getPassengerCode(int passengerNumber) {
+        return getTicketId() + "P" + passengerNumber;
+    }
+    
+    public byte[] getSignedPass(int passengerNumber) {
+        byte[][] passes = signedPasses;
+        TicketSigner lazySigner = signer;
+        if (passes == null && lazySigner != null) {
+            // Ed25519 is deterministic, so re-signing a restored ticket reproduces the issued passes
+            passes = lazySigner.signAll(this);
+            signedPasses = passes;
+        }
+        if (passes == null || passengerNumber < 1 || passengerNumber > passes.length) {
+            return null;
+        }
+        return passes[passengerNumber - 1].clone();
+    }
+    
+    void attachSignedPasses(byte[][] passes) {
+        this.signedPasses = passes;
+    }
+    
+    void attachSigner(TicketSigner signer) {
+        this.signer = signer;
+    }
+    
     public String generateReceipt() {
         StringBuilder receipt = new StringBuilder();
         String border = "=".repeat(48);
@@ -161,7 +236,8 @@ public class Ticket {
         receipt.append("              BOARDING PASS\n");
         receipt.append(border).append("\n\n");
         
-        receipt.append(String.format("  %s (%s)\n", ticketType.getDisplayName().toUpperCase(), ticketId));
+        receipt.append(String.format("  %s (%s)\n",
+                ticketType.getDisplayName().toUpperCase(Locale.ROOT), getTicketId()));
         receipt.append(String.format("  %s  -->  %s\n", origin, destination.getName()));
         receipt.append(String.format("  %s\n\n", getFormattedDate()));
         
@@ -171,7 +247,7 @@ public class Ticket {
         receipt.append(String.format("  Duration:  %s\n", getFormattedDuration()));
         receipt.append(line).append("\n\n");
         
-        receipt.append(String.format("  Passenger(s): %d Adult(s)\n", quantity));
+        receipt.append(String.format(Locale.ENGLISH, "  Passenger(s): %d Adult(s)\n", quantity));
         receipt.append(String.format("  Class:        %s\n", travelClass));
         receipt.append(String.format("  Seat(s):      %s\n\n", getFormattedSeats()));
         
@@ -189,17 +265,17 @@ public class Ticket {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Ticket ticket = (Ticket) obj;
-        return Objects.equals(ticketId, ticket.ticketId);
+        return ticketId == ticket.ticketId;
     }
     
     @Override
     public int hashCode() {
-        return Objects.hash(ticketId);
+        return Long.hashCode(ticketId);
     }
     
     @Override
     public String toString() {
         return String.format("Ticket[%s, %s, %s -> %s, %s]",
-                ticketId, ticketType, origin, destination.getName(), getFormattedPrice());
+                getTicketId(), ticketType, origin, destination.getName(), getFormattedPrice());
     }
 }
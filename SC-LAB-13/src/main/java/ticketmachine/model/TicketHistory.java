@@ -0,0 +1,41 @@
+package ticketmachine.model;
+
+import java.util.AbstractList;
+import java.util.List;
+
+public interface TicketHistory extends AutoCloseable {
+    
+    int add(Ticket ticket);
+    
+    int size();
+    
+    Ticket get(int index);
+    
+    default Ticket last() {
+        int size = size();
+        return size == 0 ? null : get(size - 1);
+    }
+    
+    // Reads through to the store, so the view must not outlive it
+    default List<Ticket> asList() {
+        int size = size();
+        return new AbstractList<Ticket>() {
+            @Override
+            public Ticket get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return TicketHistory.this.get(index);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+    
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,135 @@
+package ticketmachine.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class TicketIdAllocator {
+    
+    public static final String DISPLAY_PREFIX = "PK";
+    public static final int MAX_NODE_ID = 1022;
+    // Reserved for tickets built outside a TicketMachine, so they never share an ID space with one
+    public static final int LOCAL_NODE_ID = 1023;
+    
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+    private static final long LEASE_MILLIS = 10_000;
+    
+    private static final TicketIdAllocator LOCAL = new TicketIdAllocator(LOCAL_NODE_ID, null, true);
+    
+    private final long nodeBits;
+    private final Path stateFile;
+    private final AtomicLong state;
+    private volatile long leasedUntil;
+    
+    public TicketIdAllocator(int nodeId, Path stateFile) {
+        this(nodeId, stateFile, false);
+    }
+    
+    private TicketIdAllocator(int nodeId, Path stateFile, boolean local) {
+        if (!local && (nodeId < 0 || nodeId > MAX_NODE_ID)) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.stateFile = stateFile;
+        
+        long highWaterMark = stateFile != null ? readHighWaterMark(stateFile) : 0;
+        this.state = new AtomicLong(Math.max(highWaterMark, currentTime()) << SEQUENCE_BITS);
+        this.leasedUntil = stateFile != null ? 0 : Long.MAX_VALUE;
+    }
+    
+    public static TicketIdAllocator local() {
+        return LOCAL;
+    }
+    
+    public long nextId() {
+        while (true) {
+            long current = state.get();
+            long lastTime = current >>> SEQUENCE_BITS;
+            long now = currentTime();
+            long next;
+            if (now > lastTime) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = current + 1;
+            } else {
+                next = (lastTime + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(current, next)) {
+                long time = next >>> SEQUENCE_BITS;
+                if (time >= leasedUntil) {
+                    extendLease(time);
+                }
+                return (time << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+    
+    private synchronized void extendLease(long time) {
+        if (time < leasedUntil) return;
+        long lease = time + LEASE_MILLIS;
+        writeHighWaterMark(stateFile, lease);
+        leasedUntil = lease;
+    }
+    
+    private static long currentTime() {
+        return System.currentTimeMillis() - EPOCH_MILLIS;
+    }
+    
+    private static long readHighWaterMark(Path file) {
+        if (!Files.exists(file)) return 0;
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            return bytes.length == Long.BYTES ? ByteBuffer.wrap(bytes).getLong() : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read ticket ID state from " + file, e);
+        }
+    }
+    
+    private static void writeHighWaterMark(Path file, long value) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, value));
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot persist ticket ID state to " + file, e);
+        }
+    }
+    
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & NODE_MASK);
+    }
+    
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+    
+    public static String format(long id) {
+        return DISPLAY_PREFIX + Long.toString(id, 36).toUpperCase(Locale.ROOT);
+    }
+    
+    public static long parse(String displayId) {
+        if (displayId == null || !displayId.startsWith(DISPLAY_PREFIX)) {
+            throw new IllegalArgumentException("Invalid ticket ID: " + displayId);
+        }
+        try {
+            return Long.parseLong(displayId.substring(DISPLAY_PREFIX.length()), 36);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid ticket ID: " + displayId, e);
+        }
+    }
+}
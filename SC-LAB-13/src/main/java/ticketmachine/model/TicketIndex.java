@@ -0,0 +1,136 @@
+package ticketmachine.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TicketIndex {
+    
+    private static final int TYPE_BITS = 8;
+    private static final int CLASS_BITS = 16;
+    private static final long TYPE_MASK = (1L << TYPE_BITS) - 1;
+    private static final long CLASS_MASK = ((1L << CLASS_BITS) - 1) << TYPE_BITS;
+    private static final long ROUTE_MASK = -1L << (TYPE_BITS + CLASS_BITS);
+    
+    private final Map<String, Integer> routeIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> classIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRouteId = new AtomicInteger();
+    private final AtomicInteger nextClassId = new AtomicInteger();
+    
+    private final Postings byDeparture = new Postings();
+    private final Map<Integer, Postings> byRoute = new ConcurrentHashMap<>();
+    private final Map<Integer, Postings> byClass = new ConcurrentHashMap<>();
+    private final Postings[] byType;
+    
+    public TicketIndex() {
+        byType = new Postings[TicketType.values().length];
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new Postings();
+        }
+    }
+    
+    public void add(int position, Ticket ticket) {
+        int routeId = routeIds.computeIfAbsent(routeKey(ticket.getOrigin(), ticket.getDestination().getName()),
+                k -> nextRouteId.getAndIncrement());
+        int classId = classIds.computeIfAbsent(ticket.getTravelClass(), k -> nextClassId.getAndIncrement());
+        int typeId = ticket.getTicketType().ordinal();
+        long attributes = ((long) routeId << (TYPE_BITS + CLASS_BITS)) | ((long) classId << TYPE_BITS) | typeId;
+        long minute = DepartureKey.toEpochMinute(ticket.getDepartureTime());
+        
+        byDeparture.add(minute, position, attributes);
+        byRoute.computeIfAbsent(routeId, k -> new Postings()).add(minute, position, attributes);
+        byClass.computeIfAbsent(classId, k -> new Postings()).add(minute, position, attributes);
+        byType[typeId].add(minute, position, attributes);
+    }
+    
+    public int[] find(TicketQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+        long mask = 0;
+        long expected = 0;
+        Postings candidates = byDeparture;
+        
+        if (query.getOrigin() != null) {
+            Integer routeId = routeIds.get(routeKey(query.getOrigin(), query.getDestination()));
+            if (routeId == null) return new int[0];
+            mask |= ROUTE_MASK;
+            expected |= (long) routeId << (TYPE_BITS + CLASS_BITS);
+            candidates = smaller(candidates, byRoute.get(routeId));
+        }
+        if (query.getTravelClass() != null) {
+            Integer classId = classIds.get(query.getTravelClass());
+            if (classId == null) return new int[0];
+            mask |= CLASS_MASK;
+            expected |= (long) classId << TYPE_BITS;
+            candidates = smaller(candidates, byClass.get(classId));
+        }
+        if (query.getTicketType() != null) {
+            mask |= TYPE_MASK;
+            expected |= query.getTicketType().ordinal();
+            candidates = smaller(candidates, byType[query.getTicketType().ordinal()]);
+        }
+        if (candidates == null) return new int[0];
+        
+        NavigableMap<Long, Bucket> range = candidates.buckets.subMap(
+                query.getFromMinute(), true, query.getToMinute(), true);
+        int[] result = new int[16];
+        int count = 0;
+        for (Bucket bucket : range.values()) {
+            int size = bucket.size;
+            int[] positions = bucket.positions;
+            long[] attributes = bucket.attributes;
+            for (int i = 0; i < size; i++) {
+                if ((attributes[i] & mask) == expected) {
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, count * 2);
+                    }
+                    result[count++] = positions[i];
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    private static Postings smaller(Postings current, Postings candidate) {
+        if (current == null || candidate == null) return null;
+        return candidate.count.sum() < current.count.sum() ? candidate : current;
+    }
+    
+    private static String routeKey(String origin, String destination) {
+        return origin + '\u0000' + destination;
+    }
+    
+    private static final class Postings {
+        
+        final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+        final LongAdder count = new LongAdder();
+        
+        void add(long minute, int position, long attributes) {
+            buckets.computeIfAbsent(minute, k -> new Bucket()).add(position, attributes);
+            count.increment();
+        }
+    }
+    
+    private static final class Bucket {
+        
+        volatile int[] positions = new int[4];
+        volatile long[] attributes = new long[4];
+        volatile int size;
+        
+        synchronized void add(int position, long attribute) {
+            int index = size;
+            if (index == positions.length) {
+                positions = Arrays.copyOf(positions, index * 2);
+                attributes = Arrays.copyOf(attributes, index * 2);
+            }
+            positions[index] = position;
+            attributes[index] = attribute;
+            size = index + 1;
+        }
+    }
+}
@@ -1,30 +1,87 @@
 package ticketmachine.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-public class TicketMachine {
+public class TicketMachine implements AutoCloseable {
     
-    private final List<Destination> trainDestinations;
-    private final List<Destination> busDestinations;
-    private final List<String> originStations;
-    private final List<Ticket> transactionHistory;
-    
-    private TicketType selectedTicketType;
-    private String selectedOrigin;
-    private Destination selectedDestination;
-    private int passengerCount;
-    private String selectedClass;
-    private double insertedAmount;
-    private double lastChangeAmount;
+    private final TicketHistory transactionHistory;
+    private final TicketIndex ticketIndex;
+    private final SalesCounters salesCounters;
+    private final GateValidator gateValidator;
+    private final TicketIdAllocator idAllocator;
+    private final SeatInventory seatInventory;
+    private final PurchaseJournal journal;
+    private final TicketSigner signer;
+    private volatile Catalog catalog;
     
     public TicketMachine() {
-        this.originStations = initializeOriginStations();
-        this.trainDestinations = initializeTrainDestinations();
-        this.busDestinations = initializeBusDestinations();
-        this.transactionHistory = new ArrayList<>();
-        resetTransaction();
+        this(defaultDataDirectory(), Integer.getInteger("ticketmachine.nodeId", 0));
+    }
+    
+    public TicketMachine(Path dataDirectory, int nodeId) {
+        this.seatInventory = new SeatInventory();
+        String feed = System.getProperty("ticketmachine.feed");
+        if (feed != null) {
+            this.catalog = buildCatalog(FeedImporter.load(Paths.get(feed)), initializeClassMultipliers());
+        } else {
+            FareMatrix fareMatrix = FareMatrix.build(
+                    initializeOriginStations(),
+                    initializeTrainDestinations(),
+                    initializeBusDestinations(),
+                    initializeClassMultipliers()
+            );
+            this.catalog = new Catalog(fareMatrix, Timetable.standard(fareMatrix), seatInventory);
+        }
+        this.ticketIndex = new TicketIndex();
+        this.salesCounters = new SalesCounters();
+        this.gateValidator = new GateValidator(
+                Integer.getInteger("ticketmachine.gate.expectedTickets", GateValidator.DEFAULT_EXPECTED_TICKETS));
+        this.idAllocator = new TicketIdAllocator(nodeId,
+                dataDirectory != null ? prepare(dataDirectory).resolve("ticket-ids.hwm") : null);
+        this.signer = dataDirectory != null ? TicketSigner.load(dataDirectory) : TicketSigner.generate();
+        this.transactionHistory = "offheap".equalsIgnoreCase(System.getProperty("ticketmachine.history"))
+                ? new OffHeapTicketHistory(signer)
+                : new HeapTicketHistory();
+        this.journal = dataDirectory != null
+                ? new PurchaseJournal(dataDirectory.resolve("journal"), PurchaseJournal.DEFAULT_SEGMENT_BYTES,
+                        Boolean.parseBoolean(System.getProperty("ticketmachine.journal.groupCommit", "true")))
+                : null;
+        if (journal != null) {
+            journal.replay(this::restorePurchase);
+        }
+    }
+    
+    private void restorePurchase(Ticket ticket) {
+        ticket.attachSigner(signer);
+        ticketIndex.add(transactionHistory.add(ticket), ticket);
+        salesCounters.record(ticket);
+        gateValidator.register(ticket);
+        seatInventory.markReserved(DepartureKey.of(ticket), ticket.getSeatIndexes());
+    }
+    
+    private static Path defaultDataDirectory() {
+        String configured = System.getProperty("ticketmachine.dataDir");
+        if (configured != null && !configured.trim().isEmpty()) {
+            return Paths.get(configured.trim());
+        }
+        return Paths.get(System.getProperty("user.home"), ".ticketmachine");
+    }
+    
+    private static Path prepare(Path directory) {
+        try {
+            return Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create data directory " + directory, e);
+        }
     }
     
     private List<String> initializeOriginStations() {
@@ -70,158 +127,151 @@ public class TicketMachine {
         return Collections.unmodifiableList(destinations);
     }
     
-    public List<String> getOriginStations() {
-        return Collections.unmodifiableList(originStations);
+    private Map<String, Double> initializeClassMultipliers() {
+        Map<String, Double> multipliers = new LinkedHashMap<>();
+        multipliers.put("Economy", 1.0);
+        multipliers.put("Business", 1.5);
+        multipliers.put("AC Standard", 1.75);
+        multipliers.put("AC Sleeper", 2.0);
+        return multipliers;
     }
     
-    public List<Destination> getTrainDestinations() {
-        return trainDestinations;
+    public FareMatrix getFareMatrix() {
+        return catalog.fareMatrix;
     }
     
-    public List<Destination> getBusDestinations() {
-        return busDestinations;
+    public Timetable getTimetable() {
+        return catalog.timetable;
     }
     
-    public List<Destination> getDestinationsForType(TicketType type) {
-        if (type == null) return Collections.emptyList();
-        return type == TicketType.TRAIN ? trainDestinations : busDestinations;
+    public JourneyPlanner getJourneyPlanner() {
+        return catalog.journeyPlanner;
     }
     
-    public List<String> getTravelClasses() {
-        List<String> classes = new ArrayList<>();
-        classes.add("Economy");
-        classes.add("Business");
-        classes.add("AC Standard");
-        classes.add("AC Sleeper");
-        return classes;
-    }
-    
-    public void selectTicketType(TicketType type) {
-        if (this.selectedTicketType != type) {
-            this.selectedTicketType = type;
-            this.selectedDestination = null;
+    public synchronized void setDestinations(TicketType type, List<Destination> destinations) {
+        FareMatrix fareMatrix = catalog.fareMatrix.withDestinations(type, destinations);
+        this.catalog = new Catalog(fareMatrix, Timetable.standard(fareMatrix), seatInventory);
+    }
+    
+    public synchronized void setClassMultiplier(String travelClass, double multiplier) {
+        FareMatrix fareMatrix = catalog.fareMatrix.withClassMultiplier(travelClass, multiplier);
+        this.catalog = new Catalog(fareMatrix, catalog.timetable.withFares(fareMatrix), seatInventory);
+    }
+    
+    // Parses outside the lock; sessions keep the old catalog until the single field write
+    public FeedImporter.Network loadNetwork(Path feedDirectory) {
+        FeedImporter.Network network = FeedImporter.load(feedDirectory);
+        synchronized (this) {
+            this.catalog = buildCatalog(network, catalog.fareMatrix.getClassMultipliers());
         }
+        return network;
     }
     
-    public void selectOrigin(String origin) {
-        this.selectedOrigin = origin;
+    private Catalog buildCatalog(FeedImporter.Network network, Map<String, Double> classMultipliers) {
+        FareMatrix fareMatrix = network.buildFareMatrix(classMultipliers);
+        return new Catalog(fareMatrix, network.buildTimetable(fareMatrix), seatInventory);
     }
     
-    public void selectDestination(Destination destination) {
-        this.selectedDestination = destination;
+    public List<String> getOriginStations() {
+        return catalog.fareMatrix.getOriginStations();
     }
     
-    public void setPassengerCount(int count) {
-        if (count < 1 || count > 10) {
-            throw new IllegalArgumentException("Passenger count must be between 1 and 10");
-        }
-        this.passengerCount = count;
+    public List<Destination> getTrainDestinations() {
+        return catalog.fareMatrix.getDestinations(TicketType.TRAIN);
     }
     
-    public void selectClass(String travelClass) {
-        this.selectedClass = travelClass;
+    public List<Destination> getBusDestinations() {
+        return catalog.fareMatrix.getDestinations(TicketType.BUS);
     }
     
-    public TicketType getSelectedTicketType() { return selectedTicketType; }
-    public String getSelectedOrigin() { return selectedOrigin; }
-    public Destination getSelectedDestination() { return selectedDestination; }
-    public int getPassengerCount() { return passengerCount; }
-    public String getSelectedClass() { return selectedClass; }
-    public double getInsertedAmount() { return insertedAmount; }
-    public double getLastChangeAmount() { return lastChangeAmount; }
+    public List<Destination> getDestinationsForType(TicketType type) {
+        if (type == null) return Collections.emptyList();
+        return catalog.fareMatrix.getDestinations(type);
+    }
     
-    public double getPricePerTicket() {
-        if (selectedTicketType == null || selectedDestination == null) {
-            return 0.0;
-        }
-        double basePrice = selectedDestination.calculatePrice(selectedTicketType);
-        double classMultiplier = getClassMultiplier();
-        return Math.round(basePrice * classMultiplier);
-    }
-    
-    private double getClassMultiplier() {
-        if (selectedClass == null) return 1.0;
-        switch (selectedClass) {
-            case "Business": return 1.5;
-            case "AC Standard": return 1.75;
-            case "AC Sleeper": return 2.0;
-            default: return 1.0;
-        }
+    public List<Destination> getDestinations(TicketType type, String origin) {
+        if (type == null) return Collections.emptyList();
+        return catalog.fareMatrix.getDestinations(type, origin);
     }
     
-    public double getTotalPrice() {
-        return Math.round(getPricePerTicket() * passengerCount);
+    public List<String> getTravelClasses() {
+        return catalog.fareMatrix.getTravelClasses();
     }
     
-    public void insertMoney(double amount) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Amount must be positive");
-        }
-        this.insertedAmount = Math.round(this.insertedAmount + amount);
+    public TicketSession openSession() {
+        return new TicketSession(this);
     }
     
-    public double getRemainingAmount() {
-        double remaining = getTotalPrice() - insertedAmount;
-        return remaining > 0 ? Math.round(remaining) : 0;
+    long nextTicketId() {
+        return idAllocator.nextId();
     }
     
-    public boolean canCompletePurchase() {
-        return selectedTicketType != null 
-                && selectedOrigin != null 
-                && selectedDestination != null 
-                && passengerCount >= 1 
-                && insertedAmount >= getTotalPrice();
+    public SeatInventory getSeatInventory() {
+        return seatInventory;
     }
     
-    public boolean hasValidSelections() {
-        return selectedTicketType != null 
-                && selectedOrigin != null 
-                && selectedDestination != null;
+    public SalesCounters getSalesCounters() {
+        return salesCounters;
     }
     
-    public Ticket completePurchase() {
-        if (!canCompletePurchase()) {
-            throw new IllegalStateException("Cannot complete purchase");
-        }
-        
-        Ticket ticket = new Ticket(
-                selectedTicketType, 
-                selectedOrigin, 
-                selectedDestination, 
-                passengerCount,
-                selectedClass
-        );
-        
-        this.lastChangeAmount = Math.round(insertedAmount - ticket.getTotalPrice());
-        transactionHistory.add(ticket);
-        resetTransaction();
-        
-        return ticket;
+    public GateValidator getGateValidator() {
+        return gateValidator;
     }
     
-    public double cancelTransaction() {
-        double refund = insertedAmount;
-        resetTransaction();
-        return refund;
+    public TicketSigner getSigner() {
+        return signer;
     }
     
-    public void resetTransaction() {
-        this.selectedTicketType = null;
-        this.selectedOrigin = null;
-        this.selectedDestination = null;
-        this.passengerCount = 1;
-        this.selectedClass = "Economy";
-        this.insertedAmount = 0.0;
+    public PurchaseJournal getJournal() {
+        return journal;
+    }
+    
+    void recordPurchase(Ticket ticket) {
+        ticket.attachSignedPasses(signer.signAll(ticket));
+        if (journal != null) {
+            journal.append(ticket);
+        }
+        ticketIndex.add(transactionHistory.add(ticket), ticket);
+        salesCounters.record(ticket);
+        gateValidator.register(ticket);
     }
     
     public List<Ticket> getTransactionHistory() {
-        return Collections.unmodifiableList(transactionHistory);
+        return Collections.unmodifiableList(transactionHistory.asList());
+    }
+    
+    public List<Ticket> findTickets(TicketQuery query) {
+        int[] positions = ticketIndex.find(query);
+        List<Ticket> tickets = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            tickets.add(transactionHistory.get(position));
+        }
+        return tickets;
     }
     
     public Ticket getLastPurchasedTicket() {
-        if (transactionHistory.isEmpty()) {
-            return null;
+        return transactionHistory.last();
+    }
+    
+    @Override
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+        transactionHistory.close();
+    }
+    
+    // Fares, timetable and planner are swapped together so a reader never mixes two catalogs
+    private static final class Catalog {
+        
+        final FareMatrix fareMatrix;
+        final Timetable timetable;
+        final JourneyPlanner journeyPlanner;
+        
+        Catalog(FareMatrix fareMatrix, Timetable timetable, SeatInventory seatInventory) {
+            this.fareMatrix = fareMatrix;
+            this.timetable = timetable;
+            this.journeyPlanner = new JourneyPlanner(timetable, seatInventory);
         }
-        return transactionHistory.get(transactionHistory.size() - 1);
     }
 }
@@ -0,0 +1,48 @@
+package ticketmachine.model;
+
+import java.time.LocalDateTime;
+
+public class TicketQuery {
+    
+    private String origin;
+    private String destination;
+    private TicketType ticketType;
+    private String travelClass;
+    private long fromMinute = Long.MIN_VALUE;
+    private long toMinute = Long.MAX_VALUE;
+    
+    public TicketQuery route(String origin, Destination destination) {
+        if (origin == null || destination == null) {
+            throw new IllegalArgumentException("Origin and destination cannot be null");
+        }
+        this.origin = origin;
+        this.destination = destination.getName();
+        return this;
+    }
+    
+    public TicketQuery ticketType(TicketType ticketType) {
+        this.ticketType = ticketType;
+        return this;
+    }
+    
+    public TicketQuery travelClass(String travelClass) {
+        this.travelClass = travelClass;
+        return this;
+    }
+    
+    public TicketQuery departingBetween(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Departure range must have a start before its end");
+        }
+        this.fromMinute = DepartureKey.toEpochMinute(from);
+        this.toMinute = DepartureKey.toEpochMinute(to);
+        return this;
+    }
+    
+    public String getOrigin() { return origin; }
+    public String getDestination() { return destination; }
+    public TicketType getTicketType() { return ticketType; }
+    public String getTravelClass() { return travelClass; }
+    public long getFromMinute() { return fromMinute; }
+    public long getToMinute() { return toMinute; }
+}
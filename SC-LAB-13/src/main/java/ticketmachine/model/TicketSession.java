@@ -0,0 +1,303 @@
+package ticketmachine.model;
+
+import ticketmachine.diagnostics.LatencyHistogram;
+import ticketmachine.diagnostics.MetricsRegistry;
+import ticketmachine.diagnostics.PurchaseEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class TicketSession {
+    
+    private static final LatencyHistogram PURCHASE_LATENCY =
+            MetricsRegistry.global().histogram(MetricsRegistry.PURCHASE);
+    
+    private final TicketMachine machine;
+    
+    private TicketType selectedTicketType;
+    private String selectedOrigin;
+    private Destination selectedDestination;
+    private int passengerCount;
+    private String selectedClass;
+    private Departure selectedDeparture;
+    private double insertedAmount;
+    private double lastChangeAmount;
+    private Ticket lastPurchasedTicket;
+    
+    private FareMatrix selectionMatrix;
+    private int selectedOriginIndex = -1;
+    private int selectedDestinationIndex = -1;
+    private int selectedClassIndex;
+    
+    TicketSession(TicketMachine machine) {
+        this.machine = machine;
+        resetTransaction();
+    }
+    
+    public TicketMachine getMachine() { return machine; }
+    
+    public void selectTicketType(TicketType type) {
+        if (this.selectedTicketType != type) {
+            this.selectedTicketType = type;
+            this.selectedDestination = null;
+            this.selectedDeparture = null;
+            this.selectionMatrix = null;
+        }
+    }
+    
+    public void selectOrigin(String origin) {
+        this.selectedOrigin = origin;
+        this.selectedDeparture = null;
+        this.selectionMatrix = null;
+    }
+    
+    public void selectDestination(Destination destination) {
+        this.selectedDestination = destination;
+        this.selectedDeparture = null;
+        this.selectionMatrix = null;
+    }
+    
+    public void setPassengerCount(int count) {
+        if (count < 1 || count > 10) {
+            throw new IllegalArgumentException("Passenger count must be between 1 and 10");
+        }
+        this.passengerCount = count;
+    }
+    
+    public void selectClass(String travelClass) {
+        this.selectedClass = travelClass;
+        this.selectedDeparture = null;
+        this.selectionMatrix = null;
+    }
+    
+    public void selectDeparture(Departure departure) {
+        if (departure == null) {
+            throw new IllegalArgumentException("Departure cannot be null");
+        }
+        selectTicketType(departure.getTicketType());
+        selectOrigin(departure.getOrigin());
+        selectDestination(departure.getDestination());
+        selectClass(departure.getTravelClass());
+        setPassengerCount(departure.getPassengers());
+        this.selectedDeparture = departure;
+    }
+    
+    public List<Departure> findDepartures(DeparturePeriod period) {
+        return findDepartures(period, LocalDateTime.now());
+    }
+    
+    // Remaining departures in the period today, or the whole period tomorrow once today's have left
+    public List<Departure> findDepartures(DeparturePeriod period, LocalDateTime after) {
+        if (period == null || after == null) {
+            throw new IllegalArgumentException("Period and time cannot be null");
+        }
+        Timetable timetable = machine.getTimetable();
+        Timetable.Route route = timetable.route(selectedTicketType, selectedOrigin, selectedDestination);
+        if (route == null) {
+            return new ArrayList<>();
+        }
+        LocalDate serviceDate = after.toLocalDate();
+        int fromMinute = after.getHour() * 60 + after.getMinute() + 1;
+        Timetable.Slice slice = route.range(Math.max(period.getStartMinute(), fromMinute), period.getEndMinute());
+        if (slice.isEmpty()) {
+            serviceDate = serviceDate.plusDays(1);
+            slice = route.period(period);
+        }
+        
+        int classIndex = Math.max(0, timetable.getFareMatrix().classIndex(selectedClass));
+        SeatInventory seats = machine.getSeatInventory();
+        List<Departure> departures = new ArrayList<>(slice.size());
+        for (int i = slice.getFrom(); i < slice.getTo(); i++) {
+            int departureMinute = route.departureMinute(i);
+            long epochMinute = DepartureKey.toEpochMinute(serviceDate.atStartOfDay()) + departureMinute;
+            int available = seats.available(new DepartureKey(selectedTicketType, selectedOrigin,
+                    selectedDestination.getName(), epochMinute));
+            departures.add(new Departure(selectedTicketType, selectedOrigin, route.getDestination(), selectedClass,
+                    passengerCount, serviceDate, departureMinute, route.arrivalMinute(i) - departureMinute,
+                    route.fare(i, classIndex), available));
+        }
+        return departures;
+    }
+    
+    public List<Itinerary> findItineraries(DeparturePeriod period) {
+        return findItineraries(period, LocalDateTime.now());
+    }
+    
+    // Direct departures plus any connection in the same period that beats each of them on arrival time or fare
+    public List<Itinerary> findItineraries(DeparturePeriod period, LocalDateTime after) {
+        List<Departure> direct = findDepartures(period, after);
+        List<Itinerary> itineraries = new ArrayList<>(direct.size() + JourneyPlanner.MAX_LEGS);
+        for (Departure departure : direct) {
+            itineraries.add(Itinerary.direct(departure));
+        }
+        if (!hasValidSelections()) {
+            return itineraries;
+        }
+        
+        LocalDateTime periodStart = after.toLocalDate().atStartOfDay().plusMinutes(period.getStartMinute());
+        LocalDateTime periodEnd = after.toLocalDate().atStartOfDay().plusMinutes(period.getEndMinute());
+        if (!after.isBefore(periodEnd)) {
+            periodStart = periodStart.plusDays(1);
+            periodEnd = periodEnd.plusDays(1);
+        }
+        LocalDateTime start = after.isAfter(periodStart) ? after : periodStart;
+        boolean connections = false;
+        for (Itinerary itinerary : machine.getJourneyPlanner().plan(selectedOrigin, selectedDestination.getName(),
+                selectedClass, passengerCount, start)) {
+            if (!itinerary.isDirect() && itinerary.getDepartureDateTime().isBefore(periodEnd)
+                    && !isBeaten(itinerary, direct)) {
+                itineraries.add(itinerary);
+                connections = true;
+            }
+        }
+        if (connections) {
+            itineraries.sort(Comparator.comparing(Itinerary::getDepartureDateTime)
+                    .thenComparing(Itinerary::getArrivalDateTime));
+        }
+        return itineraries;
+    }
+    
+    // A direct departure that arrives no later for no more money leaves the connection nothing to offer
+    private static boolean isBeaten(Itinerary connection, List<Departure> direct) {
+        for (Departure departure : direct) {
+            if (!departure.getArrivalDateTime().isAfter(connection.getArrivalDateTime())
+                    && departure.getPricePerTicket() <= connection.getPricePerPassenger()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public TicketType getSelectedTicketType() { return selectedTicketType; }
+    public String getSelectedOrigin() { return selectedOrigin; }
+    public Destination getSelectedDestination() { return selectedDestination; }
+    public int getPassengerCount() { return passengerCount; }
+    public String getSelectedClass() { return selectedClass; }
+    public Departure getSelectedDeparture() { return selectedDeparture; }
+    public double getInsertedAmount() { return insertedAmount; }
+    public double getLastChangeAmount() { return lastChangeAmount; }
+    public Ticket getLastPurchasedTicket() { return lastPurchasedTicket; }
+    
+    public double getPricePerTicket() {
+        if (selectedTicketType == null || selectedDestination == null) {
+            return 0.0;
+        }
+        if (selectedDeparture != null) {
+            return selectedDeparture.getPricePerTicket();
+        }
+        FareMatrix matrix = machine.getFareMatrix();
+        if (selectionMatrix != matrix) {
+            resolveSelection(matrix);
+        }
+        if (selectedDestinationIndex < 0) {
+            double basePrice = selectedDestination.calculatePrice(selectedTicketType);
+            return Math.round(basePrice * matrix.getClassMultiplier(selectedClassIndex));
+        }
+        return matrix.price(selectedOriginIndex, selectedTicketType, selectedDestinationIndex, selectedClassIndex);
+    }
+    
+    private void resolveSelection(FareMatrix matrix) {
+        int classIndex = matrix.classIndex(selectedClass);
+        this.selectedClassIndex = classIndex < 0 ? 0 : classIndex;
+        this.selectedOriginIndex = matrix.originIndex(selectedOrigin);
+        this.selectedDestinationIndex = selectedOriginIndex < 0 ? -1
+                : matrix.destinationIndex(selectedOriginIndex, selectedTicketType, selectedDestination.getName());
+        this.selectionMatrix = matrix;
+    }
+    
+    public double getTotalPrice() {
+        return Math.round(getPricePerTicket() * passengerCount);
+    }
+    
+    public void insertMoney(double amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        this.insertedAmount = Math.round(this.insertedAmount + amount);
+    }
+    
+    public double getRemainingAmount() {
+        double remaining = getTotalPrice() - insertedAmount;
+        return remaining > 0 ? Math.round(remaining) : 0;
+    }
+    
+    public boolean canCompletePurchase() {
+        return selectedTicketType != null
+                && selectedOrigin != null
+                && selectedDestination != null
+                && passengerCount >= 1
+                && insertedAmount >= getTotalPrice();
+    }
+    
+    public boolean hasValidSelections() {
+        return selectedTicketType != null
+                && selectedOrigin != null
+                && selectedDestination != null;
+    }
+    
+    public Ticket completePurchase() {
+        if (!canCompletePurchase()) {
+            throw new IllegalStateException("Cannot complete purchase");
+        }
+        long start = System.nanoTime();
+        PurchaseEvent event = new PurchaseEvent();
+        event.begin();
+        
+        Ticket ticket = selectedDeparture == null
+                ? new Ticket(
+                        machine.nextTicketId(),
+                        selectedTicketType,
+                        selectedOrigin,
+                        selectedDestination,
+                        passengerCount,
+                        selectedClass,
+                        getPricePerTicket(),
+                        machine.getSeatInventory())
+                : new Ticket(
+                        machine.nextTicketId(),
+                        selectedTicketType,
+                        selectedOrigin,
+                        selectedDestination,
+                        passengerCount,
+                        selectedClass,
+                        getPricePerTicket(),
+                        selectedDeparture.getDepartureDateTime(),
+                        selectedDeparture.getTravelMinutes(),
+                        machine.getSeatInventory());
+        
+        try {
+            machine.recordPurchase(ticket);
+        } catch (RuntimeException e) {
+            machine.getSeatInventory().release(DepartureKey.of(ticket), ticket.getSeatIndexes());
+            throw e;
+        }
+        this.lastChangeAmount = Math.round(insertedAmount - ticket.getTotalPrice());
+        this.lastPurchasedTicket = ticket;
+        resetTransaction();
+        
+        event.complete(ticket.getOrigin(), ticket.getDestination().getName(), ticket.getQuantity(),
+                ticket.getTicketId(), ticket.getTravelClass(), ticket.getTotalPrice());
+        PURCHASE_LATENCY.recordSince(start);
+        return ticket;
+    }
+    
+    public double cancelTransaction() {
+        double refund = insertedAmount;
+        resetTransaction();
+        return refund;
+    }
+    
+    public void resetTransaction() {
+        this.selectedTicketType = null;
+        this.selectedOrigin = null;
+        this.selectedDestination = null;
+        this.passengerCount = 1;
+        this.selectedClass = "Economy";
+        this.selectedDeparture = null;
+        this.insertedAmount = 0.0;
+        this.selectionMatrix = null;
+    }
+}
@@ -0,0 +1,135 @@
+package ticketmachine.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+public final class TicketSigner {
+    
+    public static final String ALGORITHM = "Ed25519";
+    public static final String PRIVATE_KEY_FILE = "signing-key.pk8";
+    public static final String PUBLIC_KEY_FILE = "signing-key.pub";
+    
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+    private final ThreadLocal<Signature> signatures;
+    
+    public TicketSigner(KeyPair keyPair) {
+        if (keyPair == null || keyPair.getPrivate() == null || keyPair.getPublic() == null) {
+            throw new IllegalArgumentException("Key pair cannot be null");
+        }
+        this.privateKey = keyPair.getPrivate();
+        this.publicKey = keyPair.getPublic();
+        this.signatures = ThreadLocal.withInitial(() -> newSignature(privateKey));
+    }
+    
+    public static TicketSigner generate() {
+        try {
+            return new TicketSigner(KeyPairGenerator.getInstance(ALGORITHM).generateKeyPair());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+    
+    public static TicketSigner load(Path directory) {
+        Path privateFile = directory.resolve(PRIVATE_KEY_FILE);
+        Path publicFile = directory.resolve(PUBLIC_KEY_FILE);
+        boolean hasPrivate = Files.exists(privateFile);
+        boolean hasPublic = Files.exists(publicFile);
+        // A fresh pair here would silently invalidate every pass already issued
+        if (hasPrivate != hasPublic) {
+            throw new IllegalStateException("Found " + (hasPrivate ? privateFile : publicFile) + " without "
+                    + (hasPrivate ? publicFile : privateFile) + "; restore it or remove both to issue a new key");
+        }
+        try {
+            if (hasPrivate) {
+                KeyFactory factory = KeyFactory.getInstance(ALGORITHM);
+                return new TicketSigner(new KeyPair(
+                        factory.generatePublic(new X509EncodedKeySpec(Files.readAllBytes(publicFile))),
+                        factory.generatePrivate(new PKCS8EncodedKeySpec(Files.readAllBytes(privateFile)))));
+            }
+            TicketSigner signer = generate();
+            write(privateFile, signer.privateKey.getEncoded(), true);
+            write(publicFile, signer.publicKey.getEncoded(), false);
+            return signer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load signing key from " + directory, e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid signing key in " + directory, e);
+        }
+    }
+    
+    public static PublicKey readPublicKey(Path file) {
+        try {
+            return KeyFactory.getInstance(ALGORITHM).generatePublic(new X509EncodedKeySpec(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read public key from " + file, e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid public key in " + file, e);
+        }
+    }
+    
+    private static void write(Path file, byte[] encoded, boolean ownerOnly) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        // Created owner-only before any key bytes land in it; the move keeps the permissions
+        if (ownerOnly && temp.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        Files.write(temp, encoded);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static Signature newSignature(PrivateKey key) {
+        try {
+            Signature signature = Signature.getInstance(ALGORITHM);
+            signature.initSign(key);
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+    
+    public byte[] sign(Ticket ticket, int passengerNumber) {
+        if (ticket == null) {
+            throw new IllegalArgumentException("Ticket cannot be null");
+        }
+        byte[] encoded = SignedPass.encodePayload(ticket, passengerNumber);
+        Signature signature = signatures.get();
+        try {
+            signature.update(encoded, 0, SignedPass.PAYLOAD_BYTES);
+            signature.sign(encoded, SignedPass.PAYLOAD_BYTES, SignedPass.SIGNATURE_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign ticket " + ticket.getTicketId(), e);
+        }
+        return encoded;
+    }
+    
+    public byte[][] signAll(Ticket ticket) {
+        byte[][] passes = new byte[ticket.getQuantity()][];
+        for (int i = 0; i < passes.length; i++) {
+            passes[i] = sign(ticket, i + 1);
+        }
+        return passes;
+    }
+    
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+    
+    public TicketVerifier newVerifier(int parallelism) {
+        return new TicketVerifier(publicKey, parallelism);
+    }
+}
@@ -0,0 +1,121 @@
+package ticketmachine.model;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TicketVerifier implements AutoCloseable {
+    
+    // Below this a chunk costs more to hand off than to verify on the calling thread
+    private static final int MIN_CHUNK = 32;
+    
+    private final PublicKey publicKey;
+    private final ThreadLocal<Signature> signatures;
+    private final ExecutorService verifiers;
+    private final int parallelism;
+    
+    public TicketVerifier(PublicKey publicKey) {
+        this(publicKey, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public TicketVerifier(PublicKey publicKey, int parallelism) {
+        if (publicKey == null) {
+            throw new IllegalArgumentException("Public key cannot be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.publicKey = publicKey;
+        this.parallelism = parallelism;
+        this.signatures = ThreadLocal.withInitial(this::newSignature);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.verifiers = parallelism > 1
+                ? Executors.newFixedThreadPool(parallelism - 1, task -> {
+                    Thread thread = new Thread(task, "ticket-verifier-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+    
+    private Signature newSignature() {
+        try {
+            Signature signature = Signature.getInstance(TicketSigner.ALGORITHM);
+            signature.initVerify(publicKey);
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(TicketSigner.ALGORITHM + " is not available", e);
+        }
+    }
+    
+    public SignedPass verify(byte[] encoded) {
+        SignedPass pass = SignedPass.decodePayload(encoded);
+        if (pass == null) {
+            return null;
+        }
+        Signature signature = signatures.get();
+        try {
+            signature.update(encoded, 0, SignedPass.PAYLOAD_BYTES);
+            return signature.verify(encoded, SignedPass.PAYLOAD_BYTES, SignedPass.SIGNATURE_BYTES) ? pass : null;
+        } catch (GeneralSecurityException e) {
+            // A rejected point throws before the buffered message is cleared; start over for the next pass
+            signatures.remove();
+            return null;
+        }
+    }
+    
+    public int verifyBatch(byte[][] encoded, SignedPass[] results) {
+        if (encoded == null || results == null || results.length < encoded.length) {
+            throw new IllegalArgumentException("Results must hold one entry per payload");
+        }
+        int chunks = verifiers == null ? 1 : Math.min(parallelism, Math.max(1, encoded.length / MIN_CHUNK));
+        int chunkSize = (encoded.length + chunks - 1) / Math.max(chunks, 1);
+        List<Future<Integer>> pending = new ArrayList<>(chunks - 1);
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            int from = chunk * chunkSize;
+            int to = Math.min(encoded.length, from + chunkSize);
+            pending.add(verifiers.submit(() -> verifyRange(encoded, results, from, to)));
+        }
+        int valid = verifyRange(encoded, results, 0, Math.min(encoded.length, chunkSize));
+        try {
+            for (Future<Integer> future : pending) {
+                valid += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying tickets", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ticket verification failed", e.getCause());
+        }
+        return valid;
+    }
+    
+    private int verifyRange(byte[][] encoded, SignedPass[] results, int from, int to) {
+        int valid = 0;
+        for (int i = from; i < to; i++) {
+            results[i] = verify(encoded[i]);
+            if (results[i] != null) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+    
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+    
+    @Override
+    public void close() {
+        if (verifiers != null) {
+            verifiers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package ticketmachine.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Trips are stored once per stop pattern (the stations a trip calls at, in order) with one arrival and
+// departure per stop, so storage grows with stop times. Departures between two stations are derived
+// from the patterns the first time a route is asked for and kept for later searches.
+public final class Timetable {
+    
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    static final double OFF_PEAK_FACTOR = 0.95;
+    private static final int BUCKET_MINUTES = 60;
+    private static final int BUCKETS = MINUTES_PER_DAY / BUCKET_MINUTES;
+    
+    private final FareMatrix fareMatrix;
+    private final String[] stations;
+    private final Map<String, Integer> stationIds;
+    private final Pattern[] patterns;
+    private final int[] fareOrigins;
+    // Stops of every pattern calling at a station, packed per station
+    private final int[] servingStart;
+    private final int[] servingPatterns;
+    private final int[] servingStops;
+    private final int departureCount;
+    // Routes are derived from the patterns once, on first request, then shared by every search
+    private final Map<Long, Route> routes = new ConcurrentHashMap<>();
+    
+    private Timetable(FareMatrix fareMatrix, String[] stations, Map<String, Integer> stationIds,
+                      Pattern[] patterns) {
+        this.fareMatrix = fareMatrix;
+        this.stations = stations;
+        this.stationIds = stationIds;
+        this.patterns = patterns;
+        this.fareOrigins = new int[stations.length];
+        for (int s = 0; s < stations.length; s++) {
+            fareOrigins[s] = fareMatrix.originIndex(stations[s]);
+        }
+        
+        this.servingStart = new int[stations.length + 1];
+        int count = 0;
+        for (Pattern pattern : patterns) {
+            for (int stop : pattern.stops) {
+                servingStart[stop + 1]++;
+            }
+            count += pattern.tripCount * (pattern.stops.length - 1);
+        }
+        for (int s = 0; s < stations.length; s++) {
+            servingStart[s + 1] += servingStart[s];
+        }
+        this.servingPatterns = new int[servingStart[stations.length]];
+        this.servingStops = new int[servingPatterns.length];
+        int[] fill = servingStart.clone();
+        for (int p = 0; p < patterns.length; p++) {
+            int[] stops = patterns[p].stops;
+            for (int i = 0; i < stops.length; i++) {
+                int slot = fill[stops[i]]++;
+                servingPatterns[slot] = p;
+                servingStops[slot] = i;
+            }
+        }
+        this.departureCount = count;
+    }
+    
+    // Fixed-headway service on every catalog route until a real feed is loaded
+    public static Timetable standard(FareMatrix fareMatrix) {
+        if (fareMatrix == null) {
+            throw new IllegalArgumentException("Fare matrix cannot be null");
+        }
+        Builder builder = new Builder();
+        for (String origin : fareMatrix.getOriginStations()) {
+            for (TicketType type : TicketType.values()) {
+                int first = type == TicketType.TRAIN ? 5 * 60 : 6 * 60;
+                int last = type == TicketType.TRAIN ? 23 * 60 : 22 * 60;
+                int headway = type == TicketType.TRAIN ? 30 : 20;
+                for (Destination destination : fareMatrix.getDestinations(type, origin)) {
+                    if (destination.getName().equals(origin)) {
+                        continue;
+                    }
+                    int travelMinutes = Departure.travelMinutes(type, destination);
+                    for (int minute = first; minute <= last; minute += headway) {
+                        builder.add(type, origin, destination, minute, minute + travelMinutes);
+                    }
+                }
+            }
+        }
+        return builder.build(fareMatrix);
+    }
+    
+    static double peakFactor(int departureMinute) {
+        int hour = departureMinute / 60;
+        if ((hour >= 7 && hour < 10) || (hour >= 17 && hour < 20)) {
+            return 1.1;
+        }
+        if (hour < 6 || hour >= 21) {
+            return OFF_PEAK_FACTOR;
+        }
+        return 1.0;
+    }
+    
+    // First minute of the service day after the given departure at which peakFactor drops, or -1 once
+    // it is already off-peak
+    static int cheaperFrom(int departureMinute) {
+        int day = departureMinute - Math.floorMod(departureMinute, MINUTES_PER_DAY);
+        int hour = (departureMinute - day) / 60;
+        if (hour >= 7 && hour < 10) return day + 10 * 60;
+        if (hour >= 17 && hour < 20) return day + 20 * 60;
+        if (hour < 6 || hour >= 21) return -1;
+        return day + 21 * 60;
+    }
+    
+    public Timetable withFares(FareMatrix fareMatrix) {
+        if (fareMatrix == null) {
+            throw new IllegalArgumentException("Fare matrix cannot be null");
+        }
+        return new Timetable(fareMatrix, stations, stationIds, patterns);
+    }
+    
+    public Route route(TicketType type, String origin, Destination destination) {
+        if (type == null || origin == null || destination == null) {
+            return null;
+        }
+        Integer from = stationIds.get(origin);
+        Integer to = stationIds.get(destination.getName());
+        if (from == null || to == null || from.equals(to)) {
+            return null;
+        }
+        long key = ((long) type.ordinal() * stations.length + from) * stations.length + to;
+        return routes.computeIfAbsent(key, k -> buildRoute(type, origin, from, to));
+    }
+    
+    private Route buildRoute(TicketType type, String origin, int from, int to) {
+        // Departure in the high word and arrival in the low word, so a plain sort orders by departure
+        long[] trips = new long[16];
+        int size = 0;
+        int shortest = -1;
+        int shortestFrom = 0;
+        int shortestTo = 0;
+        for (int k = servingStart[from]; k < servingStart[from + 1]; k++) {
+            Pattern pattern = patterns[servingPatterns[k]];
+            int i = servingStops[k];
+            int j = pattern.type == type ? pattern.indexOf(to, i + 1) : -1;
+            if (j < 0) continue;
+            if (shortest < 0 || pattern.distance(i, j) < patterns[shortest].distance(shortestFrom, shortestTo)) {
+                shortest = servingPatterns[k];
+                shortestFrom = i;
+                shortestTo = j;
+            }
+            if (size + pattern.tripCount > trips.length) {
+                trips = Arrays.copyOf(trips, Math.max(trips.length * 2, size + pattern.tripCount));
+            }
+            for (int t = 0; t < pattern.tripCount; t++) {
+                int departure = pattern.departure(t, i);
+                int day = departure - departure % MINUTES_PER_DAY;
+                trips[size++] = ((long) (departure - day) << 32) | ((pattern.arrival(t, j) - day) & 0xFFFFFFFFL);
+            }
+        }
+        if (size == 0) {
+            return null;
+        }
+        Arrays.sort(trips, 0, size);
+        int[] departures = new int[size];
+        int[] arrivals = new int[size];
+        for (int i = 0; i < size; i++) {
+            departures[i] = (int) (trips[i] >>> 32);
+            arrivals[i] = (int) trips[i];
+        }
+        double[] classFares = new double[fareMatrix.getTravelClasses().size()];
+        for (int c = 0; c < classFares.length; c++) {
+            classFares[c] = classFare(shortest, shortestFrom, shortestTo, c);
+        }
+        return new Route(type, origin, destination(shortest, shortestFrom, shortestTo), departures, arrivals,
+                classFares);
+    }
+    
+    // The fare table's destination when it sells the pair, otherwise one at the distance along the pattern
+    Destination destination(int p, int from, int to) {
+        Pattern pattern = patterns[p];
+        int o = fareOrigins[pattern.stops[from]];
+        int d = fareMatrix.destinationIndex(o, pattern.type, stations[pattern.stops[to]]);
+        if (d >= 0) {
+            return fareMatrix.destination(o, pattern.type, d);
+        }
+        return new Destination(stations[pattern.stops[to]], Math.max(1, Math.round(pattern.distance(from, to))));
+    }
+    
+    // Fare for the stop pair before the peak factor
+    double classFare(int p, int from, int to, int travelClass) {
+        Pattern pattern = patterns[p];
+        int o = fareOrigins[pattern.stops[from]];
+        int d = fareMatrix.destinationIndex(o, pattern.type, stations[pattern.stops[to]]);
+        if (d >= 0) {
+            return fareMatrix.price(o, pattern.type, d, travelClass);
+        }
+        double basePrice = destination(p, from, to).calculatePrice(pattern.type);
+        return Math.round(basePrice * fareMatrix.getClassMultiplier(travelClass));
+    }
+    
+    static double fare(double classFare, int departureMinute) {
+        return Math.round(classFare * peakFactor(Math.floorMod(departureMinute, MINUTES_PER_DAY)));
+    }
+    
+    int stationId(String station) {
+        Integer id = station == null ? null : stationIds.get(station);
+        return id == null ? -1 : id;
+    }
+    
+    String stationName(int station) { return stations[station]; }
+    Pattern pattern(int pattern) { return patterns[pattern]; }
+    int servingFrom(int station) { return servingStart[station]; }
+    int servingTo(int station) { return servingStart[station + 1]; }
+    int servingPattern(int slot) { return servingPatterns[slot]; }
+    int servingStop(int slot) { return servingStops[slot]; }
+    
+    public FareMatrix getFareMatrix() { return fareMatrix; }
+    public int getStationCount() { return stations.length; }
+    public int getPatternCount() { return patterns.length; }
+    public int getDepartureCount() { return departureCount; }
+    
+    public static final class Route {
+        
+        private final TicketType ticketType;
+        private final String origin;
+        private final Destination destination;
+        private final int[] departures;
+        private final int[] arrivals;
+        private final int[] bucketStart;
+        private final int classCount;
+        private final double[] fares;
+        
+        private Route(TicketType ticketType, String origin, Destination destination,
+                      int[] departures, int[] arrivals, double[] classFares) {
+            this.ticketType = ticketType;
+            this.origin = origin;
+            this.destination = destination;
+            this.departures = departures;
+            this.arrivals = arrivals;
+            this.bucketStart = new int[BUCKETS + 1];
+            int index = 0;
+            for (int bucket = 0; bucket <= BUCKETS; bucket++) {
+                while (index < departures.length && departures[index] < bucket * BUCKET_MINUTES) {
+                    index++;
+                }
+                bucketStart[bucket] = index;
+            }
+            this.classCount = classFares.length;
+            this.fares = new double[departures.length * classCount];
+            for (int i = 0; i < departures.length; i++) {
+                for (int c = 0; c < classCount; c++) {
+                    fares[i * classCount + c] = Timetable.fare(classFares[c], departures[i]);
+                }
+            }
+        }
+        
+        // First index departing at or after the given minute of day
+        public int lowerBound(int minute) {
+            if (minute <= 0) return 0;
+            if (minute >= MINUTES_PER_DAY) return departures.length;
+            int bucket = minute / BUCKET_MINUTES;
+            int low = bucketStart[bucket];
+            int high = bucketStart[bucket + 1];
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (departures[mid] < minute) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        public Slice range(int fromMinute, int toMinute) {
+            int from = lowerBound(fromMinute);
+            return new Slice(this, from, Math.max(from, lowerBound(toMinute)));
+        }
+        
+        public Slice period(DeparturePeriod period) {
+            return range(period.getStartMinute(), period.getEndMinute());
+        }
+        
+        public Slice next(int fromMinute, int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Count cannot be negative");
+            }
+            int from = lowerBound(fromMinute);
+            return new Slice(this, from, (int) Math.min(departures.length, (long) from + count));
+        }
+        
+        public TicketType getTicketType() { return ticketType; }
+        public String getOrigin() { return origin; }
+        public Destination getDestination() { return destination; }
+        public int size() { return departures.length; }
+        public int departureMinute(int index) { return departures[index]; }
+        public int arrivalMinute(int index) { return arrivals[index]; }
+        
+        public double fare(int index, int travelClass) {
+            return fares[index * classCount + travelClass];
+        }
+    }
+    
+    public static final class Slice {
+        
+        private final Route route;
+        private final int from;
+        private final int to;
+        
+        private Slice(Route route, int from, int to) {
+            this.route = route;
+            this.from = from;
+            this.to = to;
+        }
+        
+        public Route getRoute() { return route; }
+        public int getFrom() { return from; }
+        public int getTo() { return to; }
+        public int size() { return to - from; }
+        public boolean isEmpty() { return from == to; }
+    }
+    
+    // Trips calling at the same stations in the same order. Times are minutes from the start of the
+    // service day, so stops after midnight run past MINUTES_PER_DAY. No trip overtakes another, so
+    // departures at every stop are sorted by trip.
+    static final class Pattern {
+        
+        final TicketType type;
+        final int[] stops;
+        final int tripCount;
+        private final double[] distances;
+        private final int[] arrivals;
+        private final int[] departures;
+        
+        private Pattern(TicketType type, int[] stops, double[] distances, List<int[]> trips) {
+            this.type = type;
+            this.stops = stops;
+            this.distances = distances;
+            this.tripCount = trips.size();
+            this.arrivals = new int[tripCount * stops.length];
+            this.departures = new int[tripCount * stops.length];
+            for (int t = 0; t < tripCount; t++) {
+                int[] times = trips.get(t);
+                for (int i = 0; i < stops.length; i++) {
+                    arrivals[t * stops.length + i] = times[2 * i];
+                    departures[t * stops.length + i] = times[2 * i + 1];
+                }
+            }
+        }
+        
+        int size() { return stops.length; }
+        int arrival(int trip, int stop) { return arrivals[trip * stops.length + stop]; }
+        int departure(int trip, int stop) { return departures[trip * stops.length + stop]; }
+        double distance(int from, int to) { return distances[to] - distances[from]; }
+        
+        int indexOf(int station, int from) {
+            for (int i = from; i < stops.length; i++) {
+                if (stops[i] == station) return i;
+            }
+            return -1;
+        }
+        
+        // First trip leaving the stop at or after the minute of its service day
+        int lowerBound(int stop, int minute) {
+            int low = 0;
+            int high = tripCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (departure(mid, stop) < minute) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        // Days the latest trip has been running by the time it leaves the stop
+        int overnightDays(int stop) {
+            return tripCount == 0 ? 0 : departure(tripCount - 1, stop) / MINUTES_PER_DAY;
+        }
+    }
+    
+    public static final class Builder {
+        
+        private final Map<String, Integer> stationIds = new HashMap<>();
+        private final List<String> stations = new ArrayList<>();
+        private final Map<PatternKey, PatternBuilder> patterns = new LinkedHashMap<>();
+        
+        public Builder add(TicketType type, String origin, Destination destination,
+                           int departureMinute, int arrivalMinute) {
+            if (type == null || origin == null || destination == null) {
+                throw new IllegalArgumentException("Ticket type, origin and destination cannot be null");
+            }
+            return addTrip(type, new String[] {origin, destination.getName()},
+                    new double[] {0, destination.getDistanceKm()},
+                    new int[] {departureMinute, arrivalMinute}, new int[] {departureMinute, arrivalMinute});
+        }
+        
+        // One trip calling at the stations in order; distances are cumulative from the first station
+        public Builder addTrip(TicketType type, String[] stations, double[] distancesKm,
+                               int[] arrivalMinutes, int[] departureMinutes) {
+            if (type == null || stations == null || distancesKm == null
+                    || arrivalMinutes == null || departureMinutes == null) {
+                throw new IllegalArgumentException("Ticket type, stations and times cannot be null");
+            }
+            int size = stations.length;
+            if (size < 2 || distancesKm.length != size || arrivalMinutes.length != size
+                    || departureMinutes.length != size) {
+                throw new IllegalArgumentException("A trip needs at least two stops with a distance and times each");
+            }
+            if (departureMinutes[0] < 0 || departureMinutes[0] >= MINUTES_PER_DAY) {
+                throw new IllegalArgumentException("Departure minute out of range: " + departureMinutes[0]);
+            }
+            int[] stops = new int[size];
+            int[] times = new int[2 * size];
+            for (int i = 0; i < size; i++) {
+                if (stations[i] == null) {
+                    throw new IllegalArgumentException("Station cannot be null");
+                }
+                if (i > 0 && (arrivalMinutes[i] < departureMinutes[i - 1] || distancesKm[i] < distancesKm[i - 1])) {
+                    throw new IllegalArgumentException("Arrival cannot be before departure");
+                }
+                if (i > 0 && i < size - 1 && departureMinutes[i] < arrivalMinutes[i]) {
+                    throw new IllegalArgumentException("Departure cannot be before arrival");
+                }
+                stops[i] = stationId(stations[i]);
+                times[2 * i] = i == 0 ? departureMinutes[0] : arrivalMinutes[i];
+                times[2 * i + 1] = i == size - 1 ? times[2 * i] : departureMinutes[i];
+            }
+            patterns.computeIfAbsent(new PatternKey(type, stops), k -> new PatternBuilder(k, distancesKm.clone()))
+                    .add(times);
+            return this;
+        }
+        
+        private int stationId(String name) {
+            Integer id = stationIds.get(name);
+            if (id == null) {
+                id = stations.size();
+                stationIds.put(name, id);
+                stations.add(name);
+            }
+            return id;
+        }
+        
+        // Destinations each origin can sell, at the shortest distance any pattern covers the pair in
+        Map<TicketType, Map<String, List<Destination>>> destinationsByOrigin() {
+            Map<TicketType, Map<Integer, Map<Integer, Double>>> shortest = new EnumMap<>(TicketType.class);
+            for (PatternBuilder pattern : patterns.values()) {
+                Map<Integer, Map<Integer, Double>> byOrigin =
+                        shortest.computeIfAbsent(pattern.key.type, k -> new LinkedHashMap<>());
+                int[] stops = pattern.key.stops;
+                for (int i = 0; i < stops.length - 1; i++) {
+                    Map<Integer, Double> byDestination = byOrigin.computeIfAbsent(stops[i], k -> new LinkedHashMap<>());
+                    for (int j = i + 1; j < stops.length; j++) {
+                        if (stops[j] == stops[i]) continue;
+                        byDestination.merge(stops[j], pattern.distances[j] - pattern.distances[i], Math::min);
+                    }
+                }
+            }
+            // One Destination per station and distance, shared by every origin that sells it
+            Map<Long, Destination> destinations = new HashMap<>();
+            Map<TicketType, Map<String, List<Destination>>> sold = new EnumMap<>(TicketType.class);
+            for (Map.Entry<TicketType, Map<Integer, Map<Integer, Double>>> byType : shortest.entrySet()) {
+                Map<String, List<Destination>> origins = new LinkedHashMap<>();
+                for (Map.Entry<Integer, Map<Integer, Double>> byOrigin : byType.getValue().entrySet()) {
+                    List<Destination> list = new ArrayList<>(byOrigin.getValue().size());
+                    for (Map.Entry<Integer, Double> entry : byOrigin.getValue().entrySet()) {
+                        long km = Math.max(1, Math.round(entry.getValue()));
+                        list.add(destinations.computeIfAbsent(((long) entry.getKey() << 24) | km,
+                                k -> new Destination(stations.get(entry.getKey()), km)));
+                    }
+                    origins.put(stations.get(byOrigin.getKey()), Collections.unmodifiableList(list));
+                }
+                sold.put(byType.getKey(), origins);
+            }
+            return sold;
+        }
+        
+        public Timetable build(FareMatrix fareMatrix) {
+            if (fareMatrix == null) {
+                throw new IllegalArgumentException("Fare matrix cannot be null");
+            }
+            List<Pattern> built = new ArrayList<>();
+            for (PatternBuilder pattern : patterns.values()) {
+                pattern.build(built);
+            }
+            return new Timetable(fareMatrix, stations.toArray(new String[0]), new HashMap<>(stationIds),
+                    built.toArray(new Pattern[0]));
+        }
+    }
+    
+    private static final class PatternKey {
+        
+        final TicketType type;
+        final int[] stops;
+        
+        PatternKey(TicketType type, int[] stops) {
+            this.type = type;
+            this.stops = stops;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof PatternKey)) return false;
+            PatternKey that = (PatternKey) obj;
+            return type == that.type && Arrays.equals(stops, that.stops);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Arrays.hashCode(stops);
+        }
+    }
+    
+    private static final class PatternBuilder {
+        
+        final PatternKey key;
+        final double[] distances;
+        // Arrival and departure per stop, interleaved
+        private final List<int[]> trips = new ArrayList<>();
+        
+        PatternBuilder(PatternKey key, double[] distances) {
+            this.key = key;
+            this.distances = distances;
+        }
+        
+        void add(int[] times) {
+            trips.add(times);
+        }
+        
+        // Trips that overtake one another go to separate patterns so every stop stays sorted by trip
+        void build(List<Pattern> built) {
+            trips.sort(Arrays::compare);
+            List<List<int[]>> fifo = new ArrayList<>();
+            for (int[] trip : trips) {
+                List<int[]> target = null;
+                for (List<int[]> candidate : fifo) {
+                    if (follows(trip, candidate.get(candidate.size() - 1))) {
+                        target = candidate;
+                        break;
+                    }
+                }
+                if (target == null) {
+                    target = new ArrayList<>();
+                    fifo.add(target);
+                }
+                target.add(trip);
+            }
+            for (List<int[]> group : fifo) {
+                built.add(new Pattern(key.type, key.stops, distances, group));
+            }
+        }
+        
+        private static boolean follows(int[] trip, int[] previous) {
+            for (int i = 0; i < trip.length; i++) {
+                if (trip[i] < previous[i]) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ticketmachine.model;
+
+public enum ValidationResult {
+    VALID("Valid"),
+    UNKNOWN("Unknown ticket"),
+    ALREADY_USED("Already used"),
+    WRONG_DEPARTURE("Wrong departure"),
+    INVALID_PASSENGER("Invalid passenger");
+    
+    private final String displayName;
+    
+    ValidationResult(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() { return displayName; }
+    
+    public boolean isAccepted() { return this == VALID; }
+    
+    @Override
+    public String toString() { return displayName; }
+}
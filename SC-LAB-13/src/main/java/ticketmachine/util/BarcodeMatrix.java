@@ -0,0 +1,64 @@
+package ticketmachine.util;
+
+public final class BarcodeMatrix {
+    
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] bits;
+    
+    BarcodeMatrix(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.bits = new long[wordsPerRow * height];
+    }
+    
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    
+    public boolean get(int x, int y) {
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+    
+    void set(int x, int y, boolean dark) {
+        int word = y * wordsPerRow + (x >>> 6);
+        if (dark) {
+            bits[word] |= 1L << x;
+        } else {
+            bits[word] &= ~(1L << x);
+        }
+    }
+    
+    void xor(BarcodeMatrix other) {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] ^= other.bits[i];
+        }
+    }
+    
+    public int runLength(int x, int y) {
+        int end = x;
+        while (end < width && get(end, y)) {
+            end++;
+        }
+        return end - x;
+    }
+    
+    long word(int index) {
+        return bits[index];
+    }
+    
+    int countDark() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+    
+    BarcodeMatrix copy() {
+        BarcodeMatrix copy = new BarcodeMatrix(width, height);
+        System.arraycopy(bits, 0, copy.bits, 0, bits.length);
+        return copy;
+    }
+}
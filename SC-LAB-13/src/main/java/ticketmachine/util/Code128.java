@@ -0,0 +1,109 @@
+package ticketmachine.util;
+
+public final class Code128 {
+    
+    private static final String[] PATTERNS = {
+            "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+            "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132",
+            "221231", "213212", "223112", "312131", "311222", "321122", "321221", "312212", "322112", "322211",
+            "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+            "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331",
+            "231131", "213113", "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111",
+            "314111", "221411", "431111", "111224", "111422", "121124", "121421", "141122", "141221", "112214",
+            "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+            "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141",
+            "214121", "412121", "111143", "111341", "131141", "114113", "114311", "411113", "411311", "113141",
+            "114131", "311141", "411131", "211412", "211214", "211232", "2331112"
+    };
+    
+    private static final int CODE_C = 99;
+    private static final int CODE_B = 100;
+    private static final int START_B = 104;
+    private static final int START_C = 105;
+    private static final int STOP = 106;
+    private static final int SYMBOL_MODULES = 11;
+    private static final int STOP_MODULES = 13;
+    
+    private static final int[] SYMBOL_BITS = new int[PATTERNS.length];
+    
+    static {
+        for (int symbol = 0; symbol < PATTERNS.length; symbol++) {
+            String pattern = PATTERNS[symbol];
+            int bits = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                boolean bar = (i & 1) == 0;
+                for (int w = pattern.charAt(i) - '0'; w > 0; w--) {
+                    bits = (bits << 1) | (bar ? 1 : 0);
+                }
+            }
+            SYMBOL_BITS[symbol] = bits;
+        }
+    }
+    
+    private Code128() {
+    }
+    
+    public static BarcodeMatrix encode(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            throw new IllegalArgumentException("Barcode text cannot be empty");
+        }
+        int[] symbols = new int[text.length() * 2 + 3];
+        int count = 0;
+        int set = 0;
+        int position = 0;
+        while (position < text.length()) {
+            int digits = digitRun(text, position);
+            boolean useC = digits >= (position == 0 || position + digits == text.length() ? 4 : 6);
+            if (useC) {
+                if (set != START_C) {
+                    symbols[count++] = set == 0 ? START_C : CODE_C;
+                    set = START_C;
+                }
+                for (int end = position + (digits & ~1); position < end; position += 2) {
+                    symbols[count++] = (text.charAt(position) - '0') * 10 + (text.charAt(position + 1) - '0');
+                }
+            } else {
+                if (set != START_B) {
+                    symbols[count++] = set == 0 ? START_B : CODE_B;
+                    set = START_B;
+                }
+                char c = text.charAt(position++);
+                if (c < 32 || c > 127) {
+                    throw new IllegalArgumentException("Code 128 set B cannot encode character " + (int) c);
+                }
+                symbols[count++] = c - 32;
+            }
+        }
+        
+        int checksum = symbols[0];
+        for (int i = 1; i < count; i++) {
+            checksum += symbols[i] * i;
+        }
+        symbols[count++] = checksum % 103;
+        
+        BarcodeMatrix matrix = new BarcodeMatrix(count * SYMBOL_MODULES + STOP_MODULES, 1);
+        int x = 0;
+        for (int i = 0; i < count; i++) {
+            x = draw(matrix, x, SYMBOL_BITS[symbols[i]], SYMBOL_MODULES);
+        }
+        draw(matrix, x, SYMBOL_BITS[STOP], STOP_MODULES);
+        return matrix;
+    }
+    
+    private static int digitRun(CharSequence text, int from) {
+        int end = from;
+        while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+            end++;
+        }
+        return end - from;
+    }
+    
+    private static int draw(BarcodeMatrix matrix, int x, int bits, int modules) {
+        for (int i = modules - 1; i >= 0; i--, x++) {
+            if ((bits & (1 << i)) != 0) {
+                matrix.set(x, 0, true);
+            }
+        }
+        return x;
+    }
+}
@@ -0,0 +1,252 @@
+package ticketmachine.util;
+
+import ticketmachine.model.Ticket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class PdfBatchExporter implements AutoCloseable {
+    
+    public enum Format { SEPARATE_FILES, ZIP_ARCHIVE }
+    
+    public interface ProgressListener {
+        void onProgress(int completed, int total);
+    }
+    
+    private final ExecutorService renderers;
+    private final int maxInFlight;
+    private final PdfOptions options;
+    
+    public PdfBatchExporter() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * 2,
+                PdfOptions.UNCOMPRESSED);
+    }
+    
+    public PdfBatchExporter(int parallelism, int maxInFlight, PdfOptions options) {
+        if (parallelism < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Parallelism and in-flight limit must be positive");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("PDF options cannot be null");
+        }
+        this.options = options;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.renderers = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "pdf-export-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxInFlight = maxInFlight;
+    }
+    
+    public Job export(List<Ticket> tickets, Path target, Format format, ProgressListener listener) {
+        if (tickets == null || target == null || format == null) {
+            throw new IllegalArgumentException("Tickets, target and format cannot be null");
+        }
+        Job job = new Job(new ArrayList<>(tickets), target, format, listener);
+        Thread.ofVirtual().name("pdf-export-coordinator").start(job::run);
+        return job;
+    }
+    
+    @Override
+    public void close() {
+        renderers.shutdownNow();
+    }
+    
+    public final class Job {
+        
+        private final List<Ticket> tickets;
+        private final Path target;
+        private final Format format;
+        private final ProgressListener listener;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+        private final long startNanos = System.nanoTime();
+        private volatile boolean cancelled;
+        private volatile Result result;
+        private ZipOutputStream archive;
+        
+        private Job(List<Ticket> tickets, Path target, Format format, ProgressListener listener) {
+            this.tickets = tickets;
+            this.target = target;
+            this.format = format;
+            this.listener = listener;
+        }
+        
+        private void run() {
+            try {
+                if (format == Format.ZIP_ARCHIVE) {
+                    Path parent = target.toAbsolutePath().getParent();
+                    if (parent != null) Files.createDirectories(parent);
+                    archive = new ZipOutputStream(Files.newOutputStream(target));
+                } else {
+                    Files.createDirectories(target);
+                }
+                for (Ticket ticket : tickets) {
+                    inFlight.acquire();
+                    if (cancelled) {
+                        inFlight.release();
+                        break;
+                    }
+                    try {
+                        renderers.execute(() -> render(ticket));
+                    } catch (RejectedExecutionException e) {
+                        inFlight.release();
+                        fail(new IOException("Exporter has been closed", e));
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.acquireUninterruptibly(maxInFlight);
+                closeArchive();
+                result = new Result(completed.get(), pages.get(), bytes.get(),
+                        System.nanoTime() - startNanos, cancelled && failure.get() == null);
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+        
+        private void render(Ticket ticket) {
+            try {
+                if (cancelled) return;
+                if (format == Format.ZIP_ARCHIVE) {
+                    ByteArrayOutputStream pdf = new ByteArrayOutputStream(4096 * ticket.getQuantity());
+                    PdfGenerator.generateTicketPdf(ticket, Channels.newChannel(pdf), options);
+                    synchronized (this) {
+                        archive.putNextEntry(new ZipEntry(ticket.getTicketId() + ".pdf"));
+                        pdf.writeTo(archive);
+                        archive.closeEntry();
+                    }
+                    bytes.addAndGet(pdf.size());
+                } else {
+                    try (FileChannel channel = FileChannel.open(target.resolve(ticket.getTicketId() + ".pdf"),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                        PdfGenerator.generateTicketPdf(ticket, channel, options);
+                        bytes.addAndGet(channel.position());
+                    }
+                }
+                pages.addAndGet(ticket.getQuantity());
+                int done = completed.incrementAndGet();
+                if (listener != null) {
+                    listener.onProgress(done, tickets.size());
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new IOException("Cannot export ticket " + ticket.getTicketId(), e));
+            } finally {
+                inFlight.release();
+            }
+        }
+        
+        private void fail(IOException e) {
+            if (!failure.compareAndSet(null, e)) {
+                failure.get().addSuppressed(e);
+            }
+            cancelled = true;
+        }
+        
+        private void closeArchive() {
+            if (archive == null) return;
+            try {
+                synchronized (this) {
+                    archive.close();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        public boolean isDone() {
+            return result != null;
+        }
+        
+        public int getCompleted() {
+            return completed.get();
+        }
+        
+        public int getTotal() {
+            return tickets.size();
+        }
+        
+        public Result await() throws IOException, InterruptedException {
+            synchronized (this) {
+                while (result == null) {
+                    wait();
+                }
+            }
+            IOException error = failure.get();
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        }
+    }
+    
+    public static final class Result {
+        
+        private final int tickets;
+        private final long pages;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final boolean cancelled;
+        
+        private Result(int tickets, long pages, long bytes, long elapsedNanos, boolean cancelled) {
+            this.tickets = tickets;
+            this.pages = pages;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.cancelled = cancelled;
+        }
+        
+        public int getTickets() { return tickets; }
+        public long getPages() { return pages; }
+        public long getBytes() { return bytes; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public boolean isCancelled() { return cancelled; }
+        
+        public double getPagesPerSecond() {
+            return elapsedNanos > 0 ? pages * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d tickets, %d pages, %d bytes in %.1f ms (%.0f pages/s)%s",
+                    tickets, pages, bytes, elapsedNanos / 1_000_000.0, getPagesPerSecond(),
+                    cancelled ? ", cancelled" : "");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ticketmachine.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+class PdfBuffer {
+    
+    protected ByteBuffer buffer;
+    
+    PdfBuffer(int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+    
+    protected void overflow(int needed) throws IOException {
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < needed) {
+            capacity *= 2;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+    
+    private void ensure(int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            overflow(needed);
+        }
+    }
+    
+    PdfBuffer append(char c) throws IOException {
+        ensure(1);
+        buffer.put(c <= 0xFF ? (byte) c : (byte) '?');
+        return this;
+    }
+    
+    PdfBuffer append(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            append(text.charAt(i));
+        }
+        return this;
+    }
+    
+    PdfBuffer append(long value) throws IOException {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        ensure(20);
+        while (divisor > 0) {
+            buffer.put((byte) ('0' + value / divisor));
+            value %= divisor;
+            divisor /= 10;
+        }
+        return this;
+    }
+    
+    PdfBuffer appendPadded(long value, int width) throws IOException {
+        long limit = 1;
+        for (int i = 1; i < width; i++) {
+            limit *= 10;
+        }
+        for (; limit > 1 && value < limit; limit /= 10) {
+            append('0');
+        }
+        return append(value);
+    }
+    
+    PdfBuffer appendText(String text) throws IOException {
+        append('(');
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\' || c == '(' || c == ')') {
+                    append('\\');
+                }
+                append(c);
+            }
+        }
+        return append(')');
+    }
+    
+    PdfBuffer append(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                overflow(Math.min(bytes.remaining(), buffer.capacity()));
+            }
+            int chunk = Math.min(bytes.remaining(), buffer.remaining());
+            buffer.put(buffer.position(), bytes, bytes.position(), chunk);
+            buffer.position(buffer.position() + chunk);
+            bytes.position(bytes.position() + chunk);
+        }
+        return this;
+    }
+    
+    int length() {
+        return buffer.position();
+    }
+    
+    ByteBuffer contents() {
+        return buffer.duplicate().flip();
+    }
+    
+    void reset() {
+        buffer.clear();
+    }
+}
@@ -1,9 +1,21 @@
 package ticketmachine.util;
 
+import ticketmachine.diagnostics.LatencyHistogram;
+import ticketmachine.diagnostics.MetricsRegistry;
+import ticketmachine.diagnostics.PdfGenerationEvent;
 import ticketmachine.model.Ticket;
 import ticketmachine.model.Destination;
+import ticketmachine.model.TicketType;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PdfGenerator {
     
@@ -11,87 +23,140 @@ public class PdfGenerator {
     private static final int PAGE_HEIGHT = 600;
     private static final int MARGIN = 30;
     
+    private static final int HEADER_Y = PAGE_HEIGHT - MARGIN;
+    private static final int SEPARATOR_Y = PAGE_HEIGHT - 180;
+    private static final int TIMES_Y = SEPARATOR_Y - 30;
+    private static final int STATIONS_Y = TIMES_Y - 20;
+    private static final int PASSENGER_ROW_Y = STATIONS_Y - 50;
+    private static final int CLASS_ROW_Y = PASSENGER_ROW_Y - 50;
+    private static final int FARE_Y = CLASS_ROW_Y - 60;
+    private static final int BARCODE_Y = FARE_Y - 80;
+    private static final int FOOTER_Y = 30;
+    
+    private static final int FONT_OBJ = 3;
+    private static final int ROUTE_TEMPLATE_OBJ = 4;
+    private static final int TICKET_FIELDS_OBJ = 5;
+    private static final int FIRST_PAGE_OBJ = 6;
+    
+    private static final int MAX_CACHED_TEMPLATES = 512;
+    private static final Map<TemplateKey, byte[]> ROUTE_TEMPLATES = new ConcurrentHashMap<>();
+    
+    private static final LatencyHistogram PDF_LATENCY =
+            MetricsRegistry.global().histogram(MetricsRegistry.PDF);
+    
+    // Called after each boarding pass page; throwing from it abandons the document
+    public interface PageListener {
+        void onPage(int completed, int total);
+    }
+    
     public static void generateTicketPdf(Ticket ticket, File file) throws IOException {
+        generateTicketPdf(ticket, file, PdfOptions.UNCOMPRESSED);
+    }
+    
+    public static void generateTicketPdf(Ticket ticket, File file, PdfOptions options) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            generateTicketPdf(ticket, channel, options);
+        }
+    }
+    
+    public static void generateTicketPdf(Ticket ticket, WritableByteChannel channel) throws IOException {
+        generateTicketPdf(ticket, channel, PdfOptions.UNCOMPRESSED);
+    }
+    
+    public static void generateTicketPdf(Ticket ticket, WritableByteChannel channel, PdfOptions options)
+            throws IOException {
+        generateTicketPdf(ticket, channel, options, null);
+    }
+    
+    public static void generateTicketPdf(Ticket ticket, WritableByteChannel channel, PdfOptions options,
+                                         PageListener listener) throws IOException {
+        if (options == null) {
+            throw new IllegalArgumentException("PDF options cannot be null");
+        }
+        long start = System.nanoTime();
+        PdfGenerationEvent event = new PdfGenerationEvent();
+        event.begin();
         int passengerCount = ticket.getQuantity();
-        int fontObjNum = 3 + passengerCount * 2;
-        int totalObjects = fontObjNum + 1;
-        
-        StringBuilder pdfContent = new StringBuilder();
-        int[] objectOffsets = new int[totalObjects + 1];
-        int currentOffset = 0;
+        int totalObjects = FIRST_PAGE_OBJ + passengerCount * 2;
         
-        String header = "%PDF-1.4\n%\u00E2\u00E3\u00CF\u00D3\n";
-        currentOffset = header.length();
+        PdfWriter pdf = PdfWriter.open(channel, options);
         
-        objectOffsets[1] = currentOffset;
-        String obj1 = "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n";
-        pdfContent.append(obj1);
-        currentOffset += obj1.length();
+        pdf.beginObject(1).append("<< /Type /Catalog /Pages 2 0 R >>\n");
+        pdf.endObject();
         
-        objectOffsets[2] = currentOffset;
-        StringBuilder pagesKids = new StringBuilder();
+        PdfBuffer pages = pdf.beginObject(2).append("<< /Type /Pages /Kids [");
         for (int i = 0; i < passengerCount; i++) {
-            pagesKids.append((3 + i * 2)).append(" 0 R ");
+            pages.append(FIRST_PAGE_OBJ + i * 2).append(" 0 R ");
         }
-        String obj2 = "2 0 obj\n<< /Type /Pages /Kids [" + pagesKids + "] /Count " + passengerCount + " >>\nendobj\n";
-        pdfContent.append(obj2);
-        currentOffset += obj2.length();
+        pages.append("] /Count ").append(passengerCount).append(" >>\n");
+        pdf.endObject();
+        
+        pdf.beginObject(FONT_OBJ).append("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\n");
+        pdf.endObject();
         
-        int nextObj = 3;
+        byte[] template = routeTemplate(pdf, ticket);
+        appendFormDictionary(pdf.beginStream(ROUTE_TEMPLATE_OBJ));
+        pdf.endStream(ByteBuffer.wrap(template));
+        
+        PdfBuffer fields = pdf.content();
+        generateTicketFields(fields, ticket);
+        appendFormDictionary(pdf.beginStream(TICKET_FIELDS_OBJ));
+        pdf.endStream(fields.contents());
+        
+        int nextObj = FIRST_PAGE_OBJ;
         for (int p = 0; p < passengerCount; p++) {
             int pageObj = nextObj;
             int contentObj = nextObj + 1;
             
-            objectOffsets[pageObj] = currentOffset;
-            String pageObjStr = pageObj + " 0 obj\n<< /Type /Page /Parent 2 0 R " +
-                    "/MediaBox [0 0 " + PAGE_WIDTH + " " + PAGE_HEIGHT + "] " +
-                    "/Contents " + contentObj + " 0 R " +
-                    "/Resources << /Font << /F1 " + fontObjNum + " 0 R >> >> >>\nendobj\n";
-            pdfContent.append(pageObjStr);
-            currentOffset += pageObjStr.length();
+            pdf.beginObject(pageObj).append("<< /Type /Page /Parent 2 0 R ")
+                    .append("/MediaBox [0 0 ").append(PAGE_WIDTH).append(" ").append(PAGE_HEIGHT).append("] ")
+                    .append("/Contents ").append(contentObj).append(" 0 R ")
+                    .append("/Resources << /Font << /F1 ").append(FONT_OBJ).append(" 0 R >> ")
+                    .append("/XObject << /Route ").append(ROUTE_TEMPLATE_OBJ).append(" 0 R /Ticket ")
+                    .append(TICKET_FIELDS_OBJ).append(" 0 R >> >> >>\n");
+            pdf.endObject();
             
-            objectOffsets[contentObj] = currentOffset;
-            String content = generatePageContent(ticket, p + 1, ticket.getSeatNumber(p));
-            String contentObjStr = contentObj + " 0 obj\n<< /Length " + content.length() + " >>\nstream\n" +
-                    content + "endstream\nendobj\n";
-            pdfContent.append(contentObjStr);
-            currentOffset += contentObjStr.length();
+            PdfBuffer content = pdf.content();
+            generatePassengerOverlay(content, ticket, p + 1, ticket.getSeatNumber(p));
+            pdf.writeStream(contentObj, content);
+            if (listener != null) {
+                listener.onPage(p + 1, passengerCount);
+            }
             
             nextObj += 2;
         }
         
-        objectOffsets[fontObjNum] = currentOffset;
-        String fontObj = fontObjNum + " 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n";
-        pdfContent.append(fontObj);
-        currentOffset += fontObj.length();
-        
-        int xrefOffset = currentOffset;
-        StringBuilder xref = new StringBuilder();
-        xref.append("xref\n");
-        xref.append("0 ").append(totalObjects).append("\n");
-        xref.append("0000000000 65535 f \n");
-        for (int i = 1; i < totalObjects; i++) {
-            xref.append(String.format("%010d 00000 n \n", objectOffsets[i]));
+        pdf.finish(totalObjects, 1);
+        event.complete(ticket.getOrigin(), ticket.getDestination().getName(), passengerCount,
+                ticket.getTicketId(), pdf.position(), options.toString());
+        PDF_LATENCY.recordSince(start);
+    }
+    
+    private static void appendFormDictionary(PdfBuffer dictionary) throws IOException {
+        dictionary.append("/Type /XObject /Subtype /Form /BBox [0 0 ").append(PAGE_WIDTH).append(" ")
+                .append(PAGE_HEIGHT).append("] /Resources << /Font << /F1 ").append(FONT_OBJ).append(" 0 R >> >> ");
+    }
+    
+    private static byte[] routeTemplate(PdfWriter pdf, Ticket ticket) throws IOException {
+        TemplateKey key = new TemplateKey(ticket);
+        byte[] template = ROUTE_TEMPLATES.get(key);
+        if (template != null) {
+            return template;
         }
-        
-        xref.append("trailer\n");
-        xref.append("<< /Size ").append(totalObjects);
-        xref.append(" /Root 1 0 R >>\n");
-        xref.append("startxref\n");
-        xref.append(xrefOffset).append("\n");
-        xref.append("%%EOF\n");
-        
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(header.getBytes("ISO-8859-1"));
-            fos.write(pdfContent.toString().getBytes("ISO-8859-1"));
-            fos.write(xref.toString().getBytes("ISO-8859-1"));
+        PdfBuffer content = pdf.content();
+        generateRouteTemplate(content, ticket);
+        ByteBuffer bytes = content.contents();
+        template = new byte[bytes.remaining()];
+        bytes.get(template);
+        if (ROUTE_TEMPLATES.size() >= MAX_CACHED_TEMPLATES) {
+            ROUTE_TEMPLATES.clear();
         }
+        byte[] existing = ROUTE_TEMPLATES.putIfAbsent(key, template);
+        return existing != null ? existing : template;
     }
     
-    private static String generatePageContent(Ticket ticket, int passengerNum, String seatNumber) {
-        StringBuilder content = new StringBuilder();
-        
-        int y = PAGE_HEIGHT - MARGIN;
+    private static void generateRouteTemplate(PdfBuffer content, Ticket ticket) throws IOException {
         int centerX = PAGE_WIDTH / 2;
         
         content.append("q\n");
@@ -101,141 +166,192 @@ public class PdfGenerator {
         
         content.append("BT\n");
         content.append("1 1 1 rg\n");
-        content.append("/F1 12 Tf\n");
-        content.append(MARGIN).append(" ").append(y - 30).append(" Td\n");
-        content.append("(").append(escapeText(ticket.getTicketType().getDisplayName())).append(" - ");
-        content.append(escapeText(ticket.getTicketId())).append("-P").append(passengerNum).append(") Tj\n");
+        content.append("/F1 18 Tf\n");
+        content.append(MARGIN).append(" ").append(HEADER_Y - 60).append(" Td\n");
+        String route = ticket.getOrigin() + " -> " + ticket.getDestination().getName();
+        content.appendText(route).append(" Tj\n");
         content.append("ET\n");
         
+        content.append("q\n");
+        content.append("0.9 0.9 0.9 RG\n");
+        content.append(MARGIN).append(" ").append(SEPARATOR_Y).append(" m ");
+        content.append(PAGE_WIDTH - MARGIN).append(" ").append(SEPARATOR_Y).append(" l S\n");
+        content.append("Q\n");
+        
         content.append("BT\n");
-        content.append("/F1 18 Tf\n");
-        content.append(MARGIN).append(" ").append(y - 60).append(" Td\n");
-        String route = ticket.getOrigin() + " -> " + ticket.getDestination().getName();
-        content.append("(").append(escapeText(route)).append(") Tj\n");
+        content.append("0.4 0.4 0.4 rg\n");
+        content.append("/F1 10 Tf\n");
+        content.append(MARGIN).append(" ").append(STATIONS_Y).append(" Td\n");
+        content.appendText(ticket.getOrigin()).append(" Tj\n");
         content.append("ET\n");
         
         content.append("BT\n");
+        content.append("0.4 0.4 0.4 rg\n");
         content.append("/F1 10 Tf\n");
-        content.append(MARGIN).append(" ").append(y - 80).append(" Td\n");
-        content.append("(").append(escapeText(ticket.getFormattedDate())).append(") Tj\n");
+        content.append(PAGE_WIDTH - MARGIN - 60).append(" ").append(STATIONS_Y).append(" Td\n");
+        content.appendText(ticket.getDestination().getName()).append(" Tj\n");
         content.append("ET\n");
         
-        y = PAGE_HEIGHT - 180;
-        content.append("q\n");
-        content.append("0.9 0.9 0.9 RG\n");
-        content.append(MARGIN).append(" ").append(y).append(" m ");
-        content.append(PAGE_WIDTH - MARGIN).append(" ").append(y).append(" l S\n");
-        content.append("Q\n");
+        addDetailLabel(content, "Passenger", MARGIN, PASSENGER_ROW_Y);
+        addDetailLabel(content, "Ticket Number", centerX, PASSENGER_ROW_Y);
+        
+        addDetailLabel(content, "Class", MARGIN, CLASS_ROW_Y);
+        addDetailValue(content, ticket.getTravelClass(), MARGIN, CLASS_ROW_Y - 15);
+        addDetailLabel(content, "Seat", centerX, CLASS_ROW_Y);
+        
+        addDetailLabel(content, "Fare per Ticket", MARGIN, FARE_Y);
+        
+        content.append("BT\n");
+        content.append("0.6 0.6 0.6 rg\n");
+        content.append("/F1 8 Tf\n");
+        content.append(centerX - 60).append(" ").append(FOOTER_Y).append(" Td\n");
+        content.appendText("Thank you for traveling with us!").append(" Tj\n");
+        content.append("ET\n");
+    }
+    
+    private static void generateTicketFields(PdfBuffer content, Ticket ticket) throws IOException {
+        int centerX = PAGE_WIDTH / 2;
+        
+        content.append("BT\n");
+        content.append("1 1 1 rg\n");
+        content.append("/F1 10 Tf\n");
+        content.append(MARGIN).append(" ").append(HEADER_Y - 80).append(" Td\n");
+        content.appendText(ticket.getFormattedDate()).append(" Tj\n");
+        content.append("ET\n");
         
-        y -= 30;
         content.append("BT\n");
         content.append("0 0 0 rg\n");
         content.append("/F1 20 Tf\n");
-        content.append(MARGIN).append(" ").append(y).append(" Td\n");
-        content.append("(").append(escapeText(ticket.getFormattedDepartureTime())).append(") Tj\n");
+        content.append(MARGIN).append(" ").append(TIMES_Y).append(" Td\n");
+        content.appendText(ticket.getFormattedDepartureTime()).append(" Tj\n");
         content.append("ET\n");
         
         content.append("BT\n");
+        content.append("0 0 0 rg\n");
         content.append("/F1 20 Tf\n");
-        content.append(PAGE_WIDTH - MARGIN - 50).append(" ").append(y).append(" Td\n");
-        content.append("(").append(escapeText(ticket.getFormattedArrivalTime())).append(") Tj\n");
+        content.append(PAGE_WIDTH - MARGIN - 50).append(" ").append(TIMES_Y).append(" Td\n");
+        content.appendText(ticket.getFormattedArrivalTime()).append(" Tj\n");
         content.append("ET\n");
         
         content.append("BT\n");
         content.append("0.4 0.4 0.4 rg\n");
         content.append("/F1 10 Tf\n");
-        content.append(centerX - 30).append(" ").append(y).append(" Td\n");
-        content.append("(").append(escapeText(ticket.getFormattedDuration())).append(") Tj\n");
+        content.append(centerX - 30).append(" ").append(TIMES_Y).append(" Td\n");
+        content.appendText(ticket.getFormattedDuration()).append(" Tj\n");
         content.append("ET\n");
         
-        y -= 20;
         content.append("BT\n");
-        content.append("/F1 10 Tf\n");
-        content.append(MARGIN).append(" ").append(y).append(" Td\n");
-        content.append("(").append(escapeText(ticket.getOrigin())).append(") Tj\n");
+        content.append("0.180 0.357 1.000 rg\n");
+        content.append("/F1 16 Tf\n");
+        content.append(MARGIN).append(" ").append(FARE_Y - 18).append(" Td\n");
+        content.appendText(Destination.formatPKR(ticket.getPricePerTicket())).append(" Tj\n");
         content.append("ET\n");
+    }
+    
+    private static void generatePassengerOverlay(PdfBuffer content, Ticket ticket, int passengerNum,
+                                                 String seatNumber) throws IOException {
+        int centerX = PAGE_WIDTH / 2;
+        
+        content.append("q /Route Do Q\n");
+        content.append("q /Ticket Do Q\n");
         
         content.append("BT\n");
-        content.append(PAGE_WIDTH - MARGIN - 60).append(" ").append(y).append(" Td\n");
-        content.append("(").append(escapeText(ticket.getDestination().getName())).append(") Tj\n");
+        content.append("1 1 1 rg\n");
+        content.append("/F1 12 Tf\n");
+        content.append(MARGIN).append(" ").append(HEADER_Y - 30).append(" Td\n");
+        content.appendText(ticket.getTicketType().getDisplayName() + " - " + ticket.getTicketId() + "-P" + passengerNum)
+                .append(" Tj\n");
         content.append("ET\n");
         
-        y -= 50;
-        addDetailLabel(content, "Passenger", MARGIN, y);
-        addDetailValue(content, "Adult " + passengerNum, MARGIN, y - 15);
-        
-        addDetailLabel(content, "Ticket Number", centerX, y);
-        addDetailValue(content, ticket.getTicketId() + "-P" + passengerNum, centerX, y - 15);
-        
-        y -= 50;
-        addDetailLabel(content, "Class", MARGIN, y);
-        addDetailValue(content, ticket.getTravelClass(), MARGIN, y - 15);
+        addDetailValue(content, "Adult " + passengerNum, MARGIN, PASSENGER_ROW_Y - 15);
+        addDetailValue(content, ticket.getTicketId() + "-P" + passengerNum, centerX, PASSENGER_ROW_Y - 15);
+        addDetailValue(content, seatNumber, centerX, CLASS_ROW_Y - 15);
         
-        addDetailLabel(content, "Seat", centerX, y);
-        addDetailValue(content, seatNumber, centerX, y - 15);
+        String passengerCode = ticket.getPassengerCode(passengerNum);
+        BarcodeMatrix barcode = Code128.encode(passengerCode);
+        appendMatrix(content, barcode, centerX - barcode.getWidth() / 2, BARCODE_Y, 1, 40);
         
-        y -= 60;
-        addDetailLabel(content, "Fare per Ticket", MARGIN, y);
+        // The signed pass (84 bytes, version 5) lets platforms without a kiosk link verify offline
+        byte[] signedPass = ticket.getSignedPass(passengerNum);
+        BarcodeMatrix qr = signedPass != null
+                ? QrCode.encode(signedPass, QrCode.ErrorCorrection.MEDIUM)
+                : QrCode.encode(passengerCode, QrCode.ErrorCorrection.MEDIUM);
+        appendMatrix(content, qr, PAGE_WIDTH - MARGIN - qr.getWidth() * 2, FARE_Y - 25, 2, 2);
         
         content.append("BT\n");
-        content.append("0.180 0.357 1.000 rg\n");
-        content.append("/F1 16 Tf\n");
-        content.append(MARGIN).append(" ").append(y - 18).append(" Td\n");
-        content.append("(").append(escapeText(Destination.formatPKR(ticket.getPricePerTicket()))).append(") Tj\n");
+        content.append("0.4 0.4 0.4 rg\n");
+        content.append("/F1 10 Tf\n");
+        content.append(centerX - 50).append(" ").append(BARCODE_Y - 15).append(" Td\n");
+        content.appendText(passengerCode).append(" Tj\n");
         content.append("ET\n");
-        
-        y -= 80;
+    }
+    
+    private static void appendMatrix(PdfBuffer content, BarcodeMatrix matrix, int x, int y,
+                                     int moduleWidth, int moduleHeight) throws IOException {
         content.append("q\n");
         content.append("0.1 0.1 0.1 rg\n");
-        int barcodeX = centerX - 80;
-        for (int i = 0; i < 40; i++) {
-            int barWidth = (i % 3 == 0) ? 3 : (i % 2 == 0) ? 2 : 1;
-            content.append(barcodeX).append(" ").append(y).append(" ").append(barWidth).append(" 40 re f\n");
-            barcodeX += barWidth + 2;
+        content.append(moduleWidth).append(" 0 0 ").append(moduleHeight).append(" ")
+                .append(x).append(" ").append(y).append(" cm\n");
+        int rows = matrix.getHeight();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < matrix.getWidth(); column++) {
+                int run = matrix.runLength(column, row);
+                if (run > 0) {
+                    content.append(column).append(" ").append(rows - 1 - row).append(" ").append(run).append(" 1 re\n");
+                    column += run;
+                }
+            }
         }
+        content.append("f\n");
         content.append("Q\n");
-        
-        content.append("BT\n");
-        content.append("0.4 0.4 0.4 rg\n");
-        content.append("/F1 10 Tf\n");
-        content.append(centerX - 50).append(" ").append(y - 15).append(" Td\n");
-        String barcodeNum = ticket.getTicketId() + "P" + passengerNum + String.format("%05d", (int)(Math.random() * 99999));
-        content.append("(").append(escapeText(barcodeNum)).append(") Tj\n");
-        content.append("ET\n");
-        
-        y = 30;
-        content.append("BT\n");
-        content.append("0.6 0.6 0.6 rg\n");
-        content.append("/F1 8 Tf\n");
-        content.append(centerX - 60).append(" ").append(y).append(" Td\n");
-        content.append("(Thank you for traveling with us!) Tj\n");
-        content.append("ET\n");
-        
-        return content.toString();
     }
     
-    private static void addDetailLabel(StringBuilder content, String text, int x, int y) {
+    private static void addDetailLabel(PdfBuffer content, String text, int x, int y)
+            throws IOException {
         content.append("BT\n");
         content.append("0.6 0.6 0.6 rg\n");
         content.append("/F1 9 Tf\n");
         content.append(x).append(" ").append(y).append(" Td\n");
-        content.append("(").append(escapeText(text)).append(") Tj\n");
+        content.appendText(text).append(" Tj\n");
         content.append("ET\n");
     }
     
-    private static void addDetailValue(StringBuilder content, String text, int x, int y) {
+    private static void addDetailValue(PdfBuffer content, String text, int x, int y)
+            throws IOException {
         content.append("BT\n");
         content.append("0 0 0 rg\n");
         content.append("/F1 12 Tf\n");
         content.append(x).append(" ").append(y).append(" Td\n");
-        content.append("(").append(escapeText(text)).append(") Tj\n");
+        content.appendText(text).append(" Tj\n");
         content.append("ET\n");
     }
     
-    private static String escapeText(String text) {
-        if (text == null) return "";
-        return text.replace("\\", "\\\\")
-                   .replace("(", "\\(")
-                   .replace(")", "\\)");
+    private static final class TemplateKey {
+        
+        private final TicketType type;
+        private final String origin;
+        private final String destination;
+        private final String travelClass;
+        
+        TemplateKey(Ticket ticket) {
+            this.type = ticket.getTicketType();
+            this.origin = ticket.getOrigin();
+            this.destination = ticket.getDestination().getName();
+            this.travelClass = ticket.getTravelClass();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof TemplateKey)) return false;
+            TemplateKey other = (TemplateKey) obj;
+            return type == other.type && origin.equals(other.origin)
+                    && destination.equals(other.destination) && travelClass.equals(other.travelClass);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, origin, destination, travelClass);
+        }
     }
 }
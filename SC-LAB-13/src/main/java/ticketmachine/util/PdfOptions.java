@@ -0,0 +1,42 @@
+package ticketmachine.util;
+
+import java.util.zip.Deflater;
+
+public final class PdfOptions {
+    
+    public static final PdfOptions UNCOMPRESSED = new PdfOptions(false, Deflater.DEFAULT_COMPRESSION, false);
+    public static final PdfOptions COMPRESSED = new PdfOptions(true, Deflater.DEFAULT_COMPRESSION, true);
+    
+    private final boolean compressStreams;
+    private final int compressionLevel;
+    private final boolean objectStreams;
+    
+    private PdfOptions(boolean compressStreams, int compressionLevel, boolean objectStreams) {
+        this.compressStreams = compressStreams;
+        this.compressionLevel = compressionLevel;
+        this.objectStreams = objectStreams;
+    }
+    
+    public static PdfOptions compressed(int compressionLevel, boolean objectStreams) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION
+                && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9");
+        }
+        return new PdfOptions(true, compressionLevel, objectStreams);
+    }
+    
+    public boolean isCompressStreams() { return compressStreams; }
+    public int getCompressionLevel() { return compressionLevel; }
+    public boolean isObjectStreams() { return objectStreams; }
+    
+    String getVersion() {
+        return objectStreams ? "1.5" : "1.4";
+    }
+    
+    @Override
+    public String toString() {
+        if (!compressStreams) return "uncompressed";
+        String level = compressionLevel == Deflater.DEFAULT_COMPRESSION ? "default" : String.valueOf(compressionLevel);
+        return "flate level " + level + (objectStreams ? " with object streams" : "");
+    }
+}
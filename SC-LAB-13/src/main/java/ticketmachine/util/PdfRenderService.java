@@ -0,0 +1,152 @@
+package ticketmachine.util;
+
+import ticketmachine.model.Ticket;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Renders boarding-pass PDFs off the caller's thread. One render per ticket is in flight at a time;
+// asking again while it runs returns the same Render. Files are written next to the target and
+// moved into place when complete, so a cancelled or failed render never leaves a truncated PDF.
+public class PdfRenderService implements AutoCloseable {
+    
+    private final ExecutorService renderer;
+    private final PdfOptions options;
+    private final Map<Long, Render> inFlight = new ConcurrentHashMap<>();
+    
+    public PdfRenderService() {
+        this(PdfOptions.UNCOMPRESSED);
+    }
+    
+    public PdfRenderService(PdfOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("PDF options cannot be null");
+        }
+        this.options = options;
+        this.renderer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "pdf-render");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public Render render(Ticket ticket, Path target, PdfGenerator.PageListener listener) {
+        if (ticket == null || target == null) {
+            throw new IllegalArgumentException("Ticket and target cannot be null");
+        }
+        Render render = inFlight.computeIfAbsent(ticket.getId(), id -> new Render(ticket, target, listener));
+        if (render.started.compareAndSet(false, true)) {
+            render.result.whenComplete((path, error) -> inFlight.remove(ticket.getId(), render));
+            renderer.execute(render::run);
+        }
+        return render;
+    }
+    
+    public Render getInFlight(Ticket ticket) {
+        return ticket != null ? inFlight.get(ticket.getId()) : null;
+    }
+    
+    @Override
+    public void close() {
+        for (Render render : inFlight.values()) {
+            render.cancel();
+        }
+        renderer.shutdownNow();
+    }
+    
+    public final class Render {
+        
+        private final Ticket ticket;
+        private final Path target;
+        private final PdfGenerator.PageListener listener;
+        private final CompletableFuture<Path> result = new CompletableFuture<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile int completedPages;
+        
+        private Render(Ticket ticket, Path target, PdfGenerator.PageListener listener) {
+            this.ticket = ticket;
+            this.target = target;
+            this.listener = listener;
+        }
+        
+        private void run() {
+            if (result.isDone()) {
+                return;
+            }
+            Path partial = target.resolveSibling(target.getFileName() + ".part");
+            try {
+                try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    PdfGenerator.generateTicketPdf(ticket, channel, options, this::onPage);
+                }
+                // Checked and moved under the same lock as cancel(), so a cancel that reports success
+                // never leaves the PDF at the target
+                synchronized (this) {
+                    if (result.isCancelled()) {
+                        deleteQuietly(partial);
+                        return;
+                    }
+                    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    result.complete(target);
+                }
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(partial);
+                result.completeExceptionally(e instanceof IOException ? new UncheckedIOException((IOException) e) : e);
+            }
+        }
+        
+        private void onPage(int completed, int total) {
+            if (result.isCancelled()) {
+                throw new CancellationException("Render of " + ticket.getTicketId() + " cancelled");
+            }
+            completedPages = completed;
+            if (listener != null) {
+                listener.onPage(completed, total);
+            }
+        }
+        
+        // Completes the future straight away; the worker notices at the next page boundary or before the move
+        public synchronized boolean cancel() {
+            return result.cancel(false);
+        }
+        
+        public CompletableFuture<Path> getResult() { return result; }
+        public Ticket getTicket() { return ticket; }
+        public Path getTarget() { return target; }
+        public int getCompletedPages() { return completedPages; }
+        public int getTotalPages() { return ticket.getQuantity(); }
+        public boolean isCancelled() { return result.isCancelled(); }
+        public boolean isDone() { return result.isDone(); }
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Best effort; the next render of the same file truncates it anyway
+        }
+    }
+    
+    // Unwraps the CompletionException layers callers see from whenComplete
+    public static Throwable causeOf(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,227 @@
+package ticketmachine.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+final class PdfWriter extends PdfBuffer {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private static final ThreadLocal<PdfWriter> WRITERS = ThreadLocal.withInitial(PdfWriter::new);
+    
+    private final PdfBuffer content = new PdfBuffer(16 * 1024);
+    private final PdfBuffer packed = new PdfBuffer(4 * 1024);
+    private final PdfBuffer deflated = new PdfBuffer(16 * 1024);
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private WritableByteChannel channel;
+    private PdfOptions options;
+    private long flushed;
+    private long[] offsets = new long[64];
+    private int[] packedIndex = new int[64];
+    private int[] packedNumbers = new int[64];
+    private int[] packedOffsets = new int[64];
+    private int packedCount;
+    
+    private PdfWriter() {
+        super(BUFFER_SIZE);
+    }
+    
+    static PdfWriter open(WritableByteChannel channel, PdfOptions options) throws IOException {
+        PdfWriter writer = WRITERS.get();
+        writer.channel = channel;
+        writer.options = options;
+        writer.flushed = 0;
+        writer.buffer.clear();
+        writer.content.reset();
+        writer.packed.reset();
+        writer.packedCount = 0;
+        Arrays.fill(writer.offsets, 0);
+        Arrays.fill(writer.packedIndex, 0);
+        writer.deflater.setLevel(options.getCompressionLevel());
+        writer.append("%PDF-").append(options.getVersion()).append("\n%\u00E2\u00E3\u00CF\u00D3\n");
+        return writer;
+    }
+    
+    @Override
+    protected void overflow(int needed) throws IOException {
+        flush();
+        if (buffer.remaining() < needed) {
+            super.overflow(needed);
+        }
+    }
+    
+    long position() {
+        return flushed + buffer.position();
+    }
+    
+    PdfBuffer content() {
+        content.reset();
+        return content;
+    }
+    
+    private void ensureObject(int number) {
+        if (number >= offsets.length) {
+            int size = Math.max(number + 1, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, size);
+            packedIndex = Arrays.copyOf(packedIndex, size);
+        }
+    }
+    
+    PdfBuffer beginObject(int number) throws IOException {
+        ensureObject(number);
+        if (options.isObjectStreams()) {
+            if (packedCount == packedNumbers.length) {
+                packedNumbers = Arrays.copyOf(packedNumbers, packedCount * 2);
+                packedOffsets = Arrays.copyOf(packedOffsets, packedCount * 2);
+            }
+            packedNumbers[packedCount] = number;
+            packedOffsets[packedCount] = packed.length();
+            packedIndex[number] = ++packedCount;
+            return packed;
+        }
+        beginDirectObject(number);
+        return this;
+    }
+    
+    private void beginDirectObject(int number) throws IOException {
+        ensureObject(number);
+        offsets[number] = position();
+        append(number).append(" 0 obj\n");
+    }
+    
+    void endObject() throws IOException {
+        if (!options.isObjectStreams()) {
+            append("endobj\n");
+        }
+    }
+    
+    void writeStream(int number, PdfBuffer data) throws IOException {
+        beginStream(number);
+        endStream(data.contents());
+    }
+    
+    PdfBuffer beginStream(int number) throws IOException {
+        beginDirectObject(number);
+        return append("<< ");
+    }
+    
+    void endStream(ByteBuffer data) throws IOException {
+        appendStreamBody(data, null);
+    }
+    
+    private void appendStreamBody(ByteBuffer first, ByteBuffer second) throws IOException {
+        if (options.isCompressStreams()) {
+            ByteBuffer compressed = deflate(first, second);
+            append("/Length ").append(compressed.remaining()).append(" /Filter /FlateDecode >>\nstream\n");
+            append(compressed);
+        } else {
+            int length = first.remaining() + (second != null ? second.remaining() : 0);
+            append("/Length ").append(length).append(" >>\nstream\n");
+            append(first);
+            if (second != null) append(second);
+        }
+        append("\nendstream\nendobj\n");
+    }
+    
+    private ByteBuffer deflate(ByteBuffer first, ByteBuffer second) throws IOException {
+        deflater.reset();
+        deflated.reset();
+        deflateInput(first);
+        if (second != null) {
+            deflateInput(second);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflateStep();
+        }
+        return deflated.contents();
+    }
+    
+    private void deflateInput(ByteBuffer input) throws IOException {
+        deflater.setInput(input);
+        while (!deflater.needsInput()) {
+            deflateStep();
+        }
+    }
+    
+    private void deflateStep() throws IOException {
+        if (!deflated.buffer.hasRemaining()) {
+            deflated.overflow(deflated.buffer.capacity());
+        }
+        deflater.deflate(deflated.buffer);
+    }
+    
+    void finish(int objectCount, int rootObject) throws IOException {
+        if (options.isObjectStreams()) {
+            finishWithXrefStream(objectCount, rootObject);
+        } else {
+            finishWithXrefTable(objectCount, rootObject);
+        }
+        flush();
+        channel = null;
+    }
+    
+    private void finishWithXrefTable(int objectCount, int rootObject) throws IOException {
+        long xrefOffset = position();
+        append("xref\n0 ").append(objectCount).append('\n');
+        append("0000000000 65535 f \n");
+        for (int i = 1; i < objectCount; i++) {
+            appendPadded(offsets[i], 10).append(" 00000 n \n");
+        }
+        append("trailer\n<< /Size ").append(objectCount).append(" /Root ").append(rootObject).append(" 0 R >>\n");
+        append("startxref\n").append(xrefOffset).append("\n%%EOF\n");
+    }
+    
+    private void finishWithXrefStream(int objectCount, int rootObject) throws IOException {
+        int objectStream = objectCount;
+        int xrefStream = objectCount + 1;
+        int size = objectCount + 2;
+        
+        PdfBuffer header = content();
+        for (int i = 0; i < packedCount; i++) {
+            header.append(packedNumbers[i]).append(' ').append(packedOffsets[i]).append(' ');
+        }
+        beginDirectObject(objectStream);
+        append("<< /Type /ObjStm /N ").append(packedCount).append(" /First ").append(header.length()).append(' ');
+        appendStreamBody(header.contents(), packed.contents());
+        
+        ensureObject(xrefStream);
+        long xrefOffset = position();
+        offsets[xrefStream] = xrefOffset;
+        PdfBuffer entries = content();
+        entries.append((char) 0).append((char) 0).append((char) 0).append((char) 0).append((char) 0)
+                .append((char) 0xFF).append((char) 0xFF);
+        for (int i = 1; i < size; i++) {
+            if (packedIndex[i] > 0) {
+                appendXrefEntry(entries, 2, objectStream, packedIndex[i] - 1);
+            } else {
+                appendXrefEntry(entries, 1, offsets[i], 0);
+            }
+        }
+        append(xrefStream).append(" 0 obj\n");
+        append("<< /Type /XRef /Size ").append(size).append(" /W [1 4 2] /Root ").append(rootObject).append(" 0 R ");
+        appendStreamBody(entries.contents(), null);
+        append("startxref\n").append(xrefOffset).append("\n%%EOF\n");
+    }
+    
+    private static void appendXrefEntry(PdfBuffer entries, int type, long field2, int field3) throws IOException {
+        entries.append((char) type)
+                .append((char) ((field2 >>> 24) & 0xFF))
+                .append((char) ((field2 >>> 16) & 0xFF))
+                .append((char) ((field2 >>> 8) & 0xFF))
+                .append((char) (field2 & 0xFF))
+                .append((char) ((field3 >>> 8) & 0xFF))
+                .append((char) (field3 & 0xFF));
+    }
+    
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,472 @@
+package ticketmachine.util;
+
+import java.nio.charset.StandardCharsets;
+
+public final class QrCode {
+    
+    public enum ErrorCorrection {
+        LOW(1), MEDIUM(0), QUARTILE(3), HIGH(2);
+        
+        private final int formatBits;
+        
+        ErrorCorrection(int formatBits) {
+            this.formatBits = formatBits;
+        }
+    }
+    
+    public static final int MIN_VERSION = 1;
+    public static final int MAX_VERSION = 10;
+    
+    private static final int[][] ECC_CODEWORDS_PER_BLOCK = {
+            {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18},
+            {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26},
+            {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24},
+            {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28}
+    };
+    private static final int[][] ERROR_CORRECTION_BLOCKS = {
+            {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4},
+            {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5},
+            {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8},
+            {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8}
+    };
+    
+    private static final int[] GF_EXP = new int[512];
+    private static final int[] GF_LOG = new int[256];
+    private static final byte[][] GENERATORS = new byte[31][];
+    private static final int[][] ALIGNMENT_POSITIONS = new int[MAX_VERSION + 1][];
+    private static final BarcodeMatrix[] FUNCTION_PATTERNS = new BarcodeMatrix[MAX_VERSION + 1];
+    private static final BarcodeMatrix[][] MASK_PATTERNS = new BarcodeMatrix[MAX_VERSION + 1][8];
+    
+    static {
+        int value = 1;
+        for (int i = 0; i < 255; i++) {
+            GF_EXP[i] = value;
+            GF_LOG[value] = i;
+            value <<= 1;
+            if (value > 0xFF) {
+                value ^= 0x11D;
+            }
+        }
+        for (int i = 255; i < GF_EXP.length; i++) {
+            GF_EXP[i] = GF_EXP[i - 255];
+        }
+        for (int[] row : ECC_CODEWORDS_PER_BLOCK) {
+            for (int degree : row) {
+                if (degree > 0 && GENERATORS[degree] == null) {
+                    GENERATORS[degree] = generator(degree);
+                }
+            }
+        }
+        for (int version = MIN_VERSION; version <= MAX_VERSION; version++) {
+            ALIGNMENT_POSITIONS[version] = alignmentPositions(version);
+            FUNCTION_PATTERNS[version] = functionPatterns(version);
+            for (int mask = 0; mask < 8; mask++) {
+                MASK_PATTERNS[version][mask] = maskPattern(FUNCTION_PATTERNS[version], mask);
+            }
+        }
+    }
+    
+    private QrCode() {
+    }
+    
+    public static BarcodeMatrix encode(String text, ErrorCorrection ecl) {
+        return encode(text.getBytes(StandardCharsets.UTF_8), ecl);
+    }
+    
+    public static BarcodeMatrix encode(byte[] data, ErrorCorrection ecl) {
+        if (data == null || ecl == null) {
+            throw new IllegalArgumentException("Data and error correction level cannot be null");
+        }
+        int version = MIN_VERSION;
+        while (dataCapacityBits(version, ecl) < dataBits(version, data.length)) {
+            if (++version > MAX_VERSION) {
+                throw new IllegalArgumentException("Data too long for a version " + MAX_VERSION + " QR code");
+            }
+        }
+        
+        byte[] codewords = addErrorCorrection(dataCodewords(data, version, ecl), version, ecl);
+        
+        int size = size(version);
+        BarcodeMatrix functions = FUNCTION_PATTERNS[version];
+        BarcodeMatrix modules = new BarcodeMatrix(size, size);
+        drawFinderAndTiming(modules, version);
+        drawCodewords(modules, functions, codewords);
+        
+        BarcodeMatrix best = null;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            BarcodeMatrix candidate = modules.copy();
+            candidate.xor(MASK_PATTERNS[version][mask]);
+            drawFormatBits(candidate, ecl, mask);
+            int penalty = penalty(candidate);
+            if (penalty < bestPenalty) {
+                best = candidate;
+                bestPenalty = penalty;
+            }
+        }
+        return best;
+    }
+    
+    private static int size(int version) {
+        return version * 4 + 17;
+    }
+    
+    private static int dataBits(int version, int length) {
+        return 4 + (version < 10 ? 8 : 16) + length * 8;
+    }
+    
+    private static int rawCodewords(int version) {
+        int result = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int alignments = version / 7 + 2;
+            result -= (25 * alignments - 10) * alignments - 55;
+            if (version >= 7) {
+                result -= 36;
+            }
+        }
+        return result / 8;
+    }
+    
+    private static int dataCapacityBits(int version, ErrorCorrection ecl) {
+        int level = ecl.ordinal();
+        return (rawCodewords(version)
+                - ECC_CODEWORDS_PER_BLOCK[level][version] * ERROR_CORRECTION_BLOCKS[level][version]) * 8;
+    }
+    
+    private static byte[] dataCodewords(byte[] data, int version, ErrorCorrection ecl) {
+        byte[] codewords = new byte[dataCapacityBits(version, ecl) / 8];
+        int bit = 0;
+        bit = appendBits(codewords, bit, 0x4, 4);
+        bit = appendBits(codewords, bit, data.length, version < 10 ? 8 : 16);
+        for (byte b : data) {
+            bit = appendBits(codewords, bit, b & 0xFF, 8);
+        }
+        bit += Math.min(4, codewords.length * 8 - bit);
+        int index = (bit + 7) >>> 3;
+        for (int pad = 0xEC; index < codewords.length; index++, pad ^= 0xEC ^ 0x11) {
+            codewords[index] = (byte) pad;
+        }
+        return codewords;
+    }
+    
+    private static int appendBits(byte[] target, int bit, int value, int length) {
+        for (int i = length - 1; i >= 0; i--, bit++) {
+            if (((value >>> i) & 1) != 0) {
+                target[bit >>> 3] |= (byte) (0x80 >>> (bit & 7));
+            }
+        }
+        return bit;
+    }
+    
+    private static byte[] addErrorCorrection(byte[] data, int version, ErrorCorrection ecl) {
+        int level = ecl.ordinal();
+        int blocks = ERROR_CORRECTION_BLOCKS[level][version];
+        int eccLength = ECC_CODEWORDS_PER_BLOCK[level][version];
+        int raw = rawCodewords(version);
+        int shortBlocks = blocks - raw % blocks;
+        int shortBlockLength = raw / blocks;
+        byte[] generator = GENERATORS[eccLength];
+        
+        byte[][] blockData = new byte[blocks][];
+        byte[][] blockEcc = new byte[blocks][];
+        for (int i = 0, offset = 0; i < blocks; i++) {
+            int length = shortBlockLength - eccLength + (i < shortBlocks ? 0 : 1);
+            blockData[i] = new byte[length];
+            System.arraycopy(data, offset, blockData[i], 0, length);
+            blockEcc[i] = remainder(blockData[i], generator);
+            offset += length;
+        }
+        
+        byte[] result = new byte[raw];
+        int index = 0;
+        for (int i = 0; i <= shortBlockLength - eccLength; i++) {
+            for (int b = 0; b < blocks; b++) {
+                if (i < blockData[b].length) {
+                    result[index++] = blockData[b][i];
+                }
+            }
+        }
+        for (int i = 0; i < eccLength; i++) {
+            for (int b = 0; b < blocks; b++) {
+                result[index++] = blockEcc[b][i];
+            }
+        }
+        return result;
+    }
+    
+    private static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : GF_EXP[GF_LOG[a] + GF_LOG[b]];
+    }
+    
+    private static byte[] generator(int degree) {
+        byte[] result = new byte[degree];
+        result[degree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < degree; i++) {
+            for (int j = 0; j < degree; j++) {
+                int term = multiply(result[j] & 0xFF, root);
+                if (j + 1 < degree) {
+                    term ^= result[j + 1] & 0xFF;
+                }
+                result[j] = (byte) term;
+            }
+            root = multiply(root, 0x02);
+        }
+        return result;
+    }
+    
+    private static byte[] remainder(byte[] data, byte[] generator) {
+        byte[] result = new byte[generator.length];
+        for (byte b : data) {
+            int factor = (b ^ result[0]) & 0xFF;
+            System.arraycopy(result, 1, result, 0, result.length - 1);
+            result[result.length - 1] = 0;
+            if (factor != 0) {
+                int logFactor = GF_LOG[factor];
+                for (int i = 0; i < result.length; i++) {
+                    int g = generator[i] & 0xFF;
+                    if (g != 0) {
+                        result[i] ^= (byte) GF_EXP[GF_LOG[g] + logFactor];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static int[] alignmentPositions(int version) {
+        if (version == 1) {
+            return new int[0];
+        }
+        int count = version / 7 + 2;
+        int step = (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+        int[] result = new int[count];
+        result[0] = 6;
+        for (int i = count - 1, position = size(version) - 7; i >= 1; i--, position -= step) {
+            result[i] = position;
+        }
+        return result;
+    }
+    
+    private static BarcodeMatrix functionPatterns(int version) {
+        int size = size(version);
+        BarcodeMatrix functions = new BarcodeMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            functions.set(6, i, true);
+            functions.set(i, 6, true);
+        }
+        for (int y = 0; y < 9; y++) {
+            for (int x = 0; x < 9; x++) {
+                functions.set(x, y, true);
+                if (x < 8) functions.set(size - 1 - x, y, true);
+                if (y < 8) functions.set(x, size - 1 - y, true);
+            }
+        }
+        functions.set(8, size - 8, true);
+        int[] positions = ALIGNMENT_POSITIONS[version];
+        int last = positions.length - 1;
+        for (int i = 0; i < positions.length; i++) {
+            for (int j = 0; j < positions.length; j++) {
+                if ((i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0)) continue;
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        functions.set(positions[i] + dx, positions[j] + dy, true);
+                    }
+                }
+            }
+        }
+        if (version >= 7) {
+            for (int i = 0; i < 18; i++) {
+                functions.set(size - 11 + i % 3, i / 3, true);
+                functions.set(i / 3, size - 11 + i % 3, true);
+            }
+        }
+        return functions;
+    }
+    
+    private static void drawFinderAndTiming(BarcodeMatrix modules, int version) {
+        int size = modules.getWidth();
+        for (int i = 0; i < size; i++) {
+            modules.set(6, i, (i & 1) == 0);
+            modules.set(i, 6, (i & 1) == 0);
+        }
+        drawFinder(modules, 3, 3);
+        drawFinder(modules, size - 4, 3);
+        drawFinder(modules, 3, size - 4);
+        
+        int[] positions = ALIGNMENT_POSITIONS[version];
+        int last = positions.length - 1;
+        for (int i = 0; i < positions.length; i++) {
+            for (int j = 0; j < positions.length; j++) {
+                if ((i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0)) continue;
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        modules.set(positions[i] + dx, positions[j] + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+                    }
+                }
+            }
+        }
+        
+        if (version >= 7) {
+            int remainder = version;
+            for (int i = 0; i < 12; i++) {
+                remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+            }
+            int bits = version << 12 | remainder;
+            for (int i = 0; i < 18; i++) {
+                boolean dark = ((bits >>> i) & 1) != 0;
+                modules.set(size - 11 + i % 3, i / 3, dark);
+                modules.set(i / 3, size - 11 + i % 3, dark);
+            }
+        }
+    }
+    
+    private static void drawFinder(BarcodeMatrix modules, int cx, int cy) {
+        int size = modules.getWidth();
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int x = cx + dx;
+                int y = cy + dy;
+                if (x >= 0 && x < size && y >= 0 && y < size) {
+                    int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                    modules.set(x, y, distance != 2 && distance != 4);
+                }
+            }
+        }
+    }
+    
+    private static void drawFormatBits(BarcodeMatrix modules, ErrorCorrection ecl, int mask) {
+        int size = modules.getWidth();
+        int data = ecl.formatBits << 3 | mask;
+        int remainder = data;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+        }
+        int bits = (data << 10 | remainder) ^ 0x5412;
+        
+        for (int i = 0; i <= 5; i++) {
+            modules.set(8, i, bit(bits, i));
+        }
+        modules.set(8, 7, bit(bits, 6));
+        modules.set(8, 8, bit(bits, 7));
+        modules.set(7, 8, bit(bits, 8));
+        for (int i = 9; i < 15; i++) {
+            modules.set(14 - i, 8, bit(bits, i));
+        }
+        for (int i = 0; i < 8; i++) {
+            modules.set(size - 1 - i, 8, bit(bits, i));
+        }
+        for (int i = 8; i < 15; i++) {
+            modules.set(8, size - 15 + i, bit(bits, i));
+        }
+        modules.set(8, size - 8, true);
+    }
+    
+    private static boolean bit(int value, int index) {
+        return ((value >>> index) & 1) != 0;
+    }
+    
+    private static void drawCodewords(BarcodeMatrix modules, BarcodeMatrix functions, byte[] codewords) {
+        int size = modules.getWidth();
+        int index = 0;
+        int totalBits = codewords.length * 8;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5;
+            }
+            for (int vertical = 0; vertical < size; vertical++) {
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    boolean upward = ((right + 1) & 2) == 0;
+                    int y = upward ? size - 1 - vertical : vertical;
+                    if (!functions.get(x, y) && index < totalBits) {
+                        modules.set(x, y, ((codewords[index >>> 3] >>> (7 - (index & 7))) & 1) != 0);
+                        index++;
+                    }
+                }
+            }
+        }
+    }
+    
+    private static BarcodeMatrix maskPattern(BarcodeMatrix functions, int mask) {
+        int size = functions.getWidth();
+        BarcodeMatrix pattern = new BarcodeMatrix(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (functions.get(x, y)) continue;
+                boolean invert;
+                switch (mask) {
+                    case 0: invert = (x + y) % 2 == 0; break;
+                    case 1: invert = y % 2 == 0; break;
+                    case 2: invert = x % 3 == 0; break;
+                    case 3: invert = (x + y) % 3 == 0; break;
+                    case 4: invert = (x / 3 + y / 2) % 2 == 0; break;
+                    case 5: invert = x * y % 2 + x * y % 3 == 0; break;
+                    case 6: invert = (x * y % 2 + x * y % 3) % 2 == 0; break;
+                    default: invert = ((x + y) % 2 + x * y % 3) % 2 == 0; break;
+                }
+                pattern.set(x, y, invert);
+            }
+        }
+        return pattern;
+    }
+    
+    private static int penalty(BarcodeMatrix modules) {
+        // Up to version 10 a symbol is at most 57 modules wide, so each row is a single word.
+        int size = modules.getWidth();
+        long[] rows = new long[size];
+        long[] columns = new long[size];
+        for (int y = 0; y < size; y++) {
+            long row = modules.word(y);
+            rows[y] = row;
+            for (int x = 0; x < size; x++) {
+                columns[x] |= ((row >>> x) & 1) << y;
+            }
+        }
+        
+        int result = 0;
+        for (int i = 0; i < size; i++) {
+            result += linePenalty(rows[i], size) + linePenalty(columns[i], size);
+        }
+        
+        long pairMask = (1L << (size - 1)) - 1;
+        for (int y = 0; y < size - 1; y++) {
+            long top = rows[y];
+            long bottom = rows[y + 1];
+            long dark = top & (top >>> 1) & bottom & (bottom >>> 1);
+            long light = ~top & ~(top >>> 1) & ~bottom & ~(bottom >>> 1);
+            result += 3 * Long.bitCount((dark | light) & pairMask);
+        }
+        
+        int total = size * size;
+        int dark = modules.countDark();
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        return result + k * 10;
+    }
+    
+    private static int linePenalty(long line, int size) {
+        int result = 0;
+        int run = 0;
+        long runColor = -1;
+        int window = 0;
+        for (int i = 0; i < size; i++) {
+            long color = (line >>> i) & 1;
+            if (color == runColor) {
+                run++;
+                if (run == 5) {
+                    result += 3;
+                } else if (run > 5) {
+                    result++;
+                }
+            } else {
+                runColor = color;
+                run = 1;
+            }
+            window = ((window << 1) | (int) color) & 0x7FF;
+            if (i >= 10 && (window == 0b10111010000 || window == 0b00001011101)) {
+                result += 40;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+package ticketmachine.util;
+
+import ticketmachine.model.Ticket;
+import ticketmachine.model.TicketIdAllocator;
+import ticketmachine.model.TicketType;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public final class ReceiptTemplate {
+    
+    public static final ReceiptTemplate BOARDING_PASS = compile(
+            "================================================\n" +
+            "              BOARDING PASS\n" +
+            "================================================\n\n" +
+            "  {TYPE} ({ID})\n" +
+            "  {ORIGIN}  -->  {DESTINATION}\n" +
+            "  {DATE}\n\n" +
+            "------------------------------------------------\n" +
+            "  Departure: {DEPARTURE:12}  Arrival: {ARRIVAL}\n" +
+            "  Duration:  {DURATION}\n" +
+            "------------------------------------------------\n\n" +
+            "  Passenger(s): {QUANTITY} Adult(s)\n" +
+            "  Class:        {CLASS}\n" +
+            "  Seat(s):      {SEATS}\n\n" +
+            "------------------------------------------------\n" +
+            "  TOTAL FARE:   {TOTAL}\n" +
+            "================================================\n" +
+            "         Thank you for traveling with us!\n" +
+            "================================================");
+    
+    private enum Field {
+        TYPE, ID, ORIGIN, DESTINATION, DATE, DEPARTURE, ARRIVAL, DURATION, QUANTITY, CLASS, SEATS, TOTAL
+    }
+    
+    private static final char[][] TYPE_NAMES = new char[TicketType.values().length][];
+    private static final char[][] MONTHS = {
+            "Jan".toCharArray(), "Feb".toCharArray(), "Mar".toCharArray(), "Apr".toCharArray(),
+            "May".toCharArray(), "Jun".toCharArray(), "Jul".toCharArray(), "Aug".toCharArray(),
+            "Sep".toCharArray(), "Oct".toCharArray(), "Nov".toCharArray(), "Dec".toCharArray()
+    };
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    private static final char[] ID_PREFIX = TicketIdAllocator.DISPLAY_PREFIX.toCharArray();
+    private static final char[] SEAT_SEPARATOR = ", ".toCharArray();
+    private static final char[] CURRENCY_PREFIX = "Rs. ".toCharArray();
+    
+    static {
+        for (TicketType type : TicketType.values()) {
+            TYPE_NAMES[type.ordinal()] = type.getDisplayName().toUpperCase(Locale.ROOT).toCharArray();
+        }
+    }
+    
+    private static final ThreadLocal<CharSink> CHAR_SINK = ThreadLocal.withInitial(CharSink::new);
+    private static final ThreadLocal<ByteSink> BYTE_SINK = ThreadLocal.withInitial(ByteSink::new);
+    
+    private final char[][] literals;
+    private final Field[] fields;
+    private final int[] widths;
+    
+    private ReceiptTemplate(char[][] literals, Field[] fields, int[] widths) {
+        this.literals = literals;
+        this.fields = fields;
+        this.widths = widths;
+    }
+    
+    public static ReceiptTemplate compile(String layout) {
+        if (layout == null) {
+            throw new IllegalArgumentException("Layout cannot be null");
+        }
+        List<char[]> literals = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+        
+        int position = 0;
+        while (true) {
+            int open = layout.indexOf('{', position);
+            if (open < 0) {
+                literals.add(layout.substring(position).toCharArray());
+                break;
+            }
+            int close = layout.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at index " + open);
+            }
+            literals.add(layout.substring(position, open).toCharArray());
+            
+            String placeholder = layout.substring(open + 1, close);
+            int colon = placeholder.indexOf(':');
+            String name = colon < 0 ? placeholder : placeholder.substring(0, colon);
+            try {
+                fields.add(Field.valueOf(name));
+                widths.add(colon < 0 ? 0 : Integer.parseInt(placeholder.substring(colon + 1)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown placeholder {" + placeholder + "}", e);
+            }
+            position = close + 1;
+        }
+        
+        int[] widthArray = new int[widths.size()];
+        for (int i = 0; i < widthArray.length; i++) {
+            widthArray[i] = widths.get(i);
+        }
+        return new ReceiptTemplate(literals.toArray(new char[0][]), fields.toArray(new Field[0]), widthArray);
+    }
+    
+    public void render(Ticket ticket, CharBuffer out) {
+        CharSink sink = CHAR_SINK.get();
+        sink.buffer = out;
+        try {
+            render(ticket, sink);
+        } finally {
+            sink.buffer = null;
+        }
+    }
+    
+    public void render(Ticket ticket, ByteBuffer out) {
+        ByteSink sink = BYTE_SINK.get();
+        sink.buffer = out;
+        try {
+            render(ticket, sink);
+        } finally {
+            sink.buffer = null;
+        }
+    }
+    
+    private void render(Ticket ticket, Sink out) {
+        if (ticket == null) {
+            throw new IllegalArgumentException("Ticket cannot be null");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            out.put(literals[i]);
+            int start = out.length();
+            writeField(ticket, fields[i], out);
+            for (int pad = widths[i] - (out.length() - start); pad > 0; pad--) {
+                out.put(' ');
+            }
+        }
+        out.put(literals[fields.length]);
+    }
+    
+    private static void writeField(Ticket ticket, Field field, Sink out) {
+        switch (field) {
+            case TYPE:
+                out.put(TYPE_NAMES[ticket.getTicketType().ordinal()]);
+                break;
+            case ID:
+                out.put(ID_PREFIX);
+                writeNumber(ticket.getId(), 36, false, out);
+                break;
+            case ORIGIN:
+                out.put(ticket.getOrigin());
+                break;
+            case DESTINATION:
+                out.put(ticket.getDestination().getName());
+                break;
+            case DATE:
+                writeDate(ticket.getDepartureTime(), out);
+                break;
+            case DEPARTURE:
+                writeTime(ticket.getDepartureTime(), out);
+                break;
+            case ARRIVAL:
+                writeTime(ticket.getArrivalTime(), out);
+                break;
+            case DURATION:
+                writeDuration(ticket.getDepartureTime().until(ticket.getArrivalTime(), ChronoUnit.MINUTES), out);
+                break;
+            case QUANTITY:
+                writeNumber(ticket.getQuantity(), 10, false, out);
+                break;
+            case CLASS:
+                out.put(ticket.getTravelClass());
+                break;
+            case SEATS:
+                for (int i = 0; i < ticket.getQuantity(); i++) {
+                    if (i > 0) out.put(SEAT_SEPARATOR);
+                    out.put(ticket.getSeatNumber(i));
+                }
+                break;
+            case TOTAL:
+                out.put(CURRENCY_PREFIX);
+                writeNumber(Math.round(ticket.getTotalPrice()), 10, true, out);
+                break;
+            default:
+                throw new IllegalStateException("Unhandled field " + field);
+        }
+    }
+    
+    private static void writeDate(LocalDateTime time, Sink out) {
+        writeTwoDigits(time.getDayOfMonth(), out);
+        out.put(' ');
+        out.put(MONTHS[time.getMonthValue() - 1]);
+        out.put(' ');
+        writeNumber(time.getYear(), 10, false, out);
+    }
+    
+    private static void writeTime(LocalDateTime time, Sink out) {
+        writeTwoDigits(time.getHour(), out);
+        out.put(':');
+        writeTwoDigits(time.getMinute(), out);
+    }
+    
+    private static void writeDuration(long minutes, Sink out) {
+        long hours = minutes / 60;
+        if (hours > 0) {
+            writeNumber(hours, 10, false, out);
+            out.put('h');
+            out.put(' ');
+        }
+        writeNumber(minutes % 60, 10, false, out);
+        out.put('m');
+    }
+    
+    private static void writeTwoDigits(int value, Sink out) {
+        out.put(DIGITS[value / 10]);
+        out.put(DIGITS[value % 10]);
+    }
+    
+    private static void writeNumber(long value, int radix, boolean grouped, Sink out) {
+        if (value < 0) {
+            out.put('-');
+            value = -value;
+        }
+        long divisor = 1;
+        int digits = 1;
+        while (value / divisor >= radix) {
+            divisor *= radix;
+            digits++;
+        }
+        while (divisor > 0) {
+            out.put(DIGITS[(int) (value / divisor)]);
+            value %= divisor;
+            divisor /= radix;
+            digits--;
+            if (grouped && digits > 0 && digits % 3 == 0) {
+                out.put(',');
+            }
+        }
+    }
+    
+    private abstract static class Sink {
+        
+        abstract void put(char c);
+        
+        abstract int length();
+        
+        void put(char[] chars) {
+            for (char c : chars) {
+                put(c);
+            }
+        }
+        
+        void put(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                put(text.charAt(i));
+            }
+        }
+    }
+    
+    private static final class CharSink extends Sink {
+        
+        CharBuffer buffer;
+        
+        @Override
+        void put(char c) {
+            buffer.put(c);
+        }
+        
+        @Override
+        void put(char[] chars) {
+            buffer.put(chars);
+        }
+        
+        @Override
+        int length() {
+            return buffer.position();
+        }
+    }
+    
+    private static final class ByteSink extends Sink {
+        
+        ByteBuffer buffer;
+        
+        @Override
+        void put(char c) {
+            buffer.put(c <= 0xFF ? (byte) c : (byte) '?');
+        }
+        
+        @Override
+        int length() {
+            return buffer.position();
+        }
+    }
+}
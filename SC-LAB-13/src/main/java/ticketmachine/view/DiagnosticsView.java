@@ -0,0 +1,142 @@
+package ticketmachine.view;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.HPos;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.scene.shape.SVGPath;
+import javafx.util.Duration;
+import ticketmachine.diagnostics.LatencyHistogram;
+import ticketmachine.diagnostics.MetricsRegistry;
+
+import java.util.List;
+import java.util.Locale;
+
+public class DiagnosticsView {
+    
+    private static final String[] COLUMNS = { "Operation", "Count", "p50", "p99", "p99.9", "Max" };
+    
+    private final VBox root;
+    private final Button backButton;
+    private final Button resetButton;
+    private final GridPane table;
+    private final MetricsRegistry registry;
+    private final Timeline refresh;
+    
+    public DiagnosticsView() {
+        this(MetricsRegistry.global());
+    }
+    
+    public DiagnosticsView(MetricsRegistry registry) {
+        this.registry = registry;
+        this.backButton = new Button();
+        this.resetButton = new Button("Reset Counters");
+        this.table = new GridPane();
+        
+        this.root = buildLayout();
+        
+        // Only poll while the page is on screen
+        this.refresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> update()));
+        refresh.setCycleCount(Animation.INDEFINITE);
+        root.visibleProperty().addListener((obs, wasVisible, visible) -> {
+            if (visible) {
+                update();
+                refresh.play();
+            } else {
+                refresh.stop();
+            }
+        });
+        resetButton.setOnAction(e -> {
+            registry.reset();
+            update();
+        });
+    }
+    
+    private VBox buildLayout() {
+        VBox layout = new VBox(0);
+        layout.getStyleClass().add("diagnostics-view");
+        
+        HBox header = new HBox(12);
+        header.getStyleClass().add("payment-header");
+        header.setPadding(new Insets(16, 20, 16, 20));
+        header.setAlignment(Pos.CENTER_LEFT);
+        
+        backButton.getStyleClass().add("back-btn");
+        SVGPath backIcon = IconFactory.createBackIcon();
+        IconFactory.scaleIcon(backIcon, 20);
+        backButton.setGraphic(backIcon);
+        
+        Label title = new Label("Diagnostics");
+        title.getStyleClass().add("page-title");
+        header.getChildren().addAll(backButton, title);
+        
+        VBox card = new VBox(12);
+        card.getStyleClass().add("summary-card");
+        card.setPadding(new Insets(16));
+        
+        Label cardHeader = new Label("Latency (ms)");
+        cardHeader.getStyleClass().add("summary-header");
+        
+        table.setHgap(12);
+        table.setVgap(8);
+        for (int column = 0; column < COLUMNS.length; column++) {
+            ColumnConstraints constraints = new ColumnConstraints();
+            constraints.setHalignment(column == 0 ? HPos.LEFT : HPos.RIGHT);
+            constraints.setHgrow(column == 0 ? Priority.ALWAYS : Priority.NEVER);
+            table.getColumnConstraints().add(constraints);
+        }
+        
+        card.getChildren().addAll(cardHeader, new Separator(), table);
+        
+        VBox content = new VBox(16, card);
+        content.setPadding(new Insets(16, 20, 16, 20));
+        ScrollPane scrollPane = new ScrollPane(content);
+        scrollPane.setFitToWidth(true);
+        scrollPane.getStyleClass().add("results-scroll");
+        VBox.setVgrow(scrollPane, Priority.ALWAYS);
+        
+        resetButton.getStyleClass().add("cancel-btn");
+        resetButton.setMaxWidth(Double.MAX_VALUE);
+        HBox buttons = new HBox(resetButton);
+        HBox.setHgrow(resetButton, Priority.ALWAYS);
+        buttons.setPadding(new Insets(16, 20, 20, 20));
+        
+        layout.getChildren().addAll(header, scrollPane, buttons);
+        return layout;
+    }
+    
+    public void update() {
+        List<LatencyHistogram.Snapshot> snapshots = registry.snapshot();
+        table.getChildren().clear();
+        for (int column = 0; column < COLUMNS.length; column++) {
+            table.add(createCell(COLUMNS[column], "summary-label"), column, 0);
+        }
+        int row = 1;
+        for (LatencyHistogram.Snapshot snapshot : snapshots) {
+            table.add(createCell(snapshot.getName(), "summary-label"), 0, row);
+            table.add(createCell(String.valueOf(snapshot.getCount()), "summary-value"), 1, row);
+            table.add(createCell(millis(snapshot.getValueAtPercentile(50)), "summary-value"), 2, row);
+            table.add(createCell(millis(snapshot.getValueAtPercentile(99)), "summary-value"), 3, row);
+            table.add(createCell(millis(snapshot.getValueAtPercentile(99.9)), "summary-value"), 4, row);
+            table.add(createCell(millis(snapshot.getMaxNanos()), "summary-value"), 5, row);
+            row++;
+        }
+    }
+    
+    private Label createCell(String text, String styleClass) {
+        Label label = new Label(text);
+        label.getStyleClass().add(styleClass);
+        return label;
+    }
+    
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+    
+    public VBox getRoot() { return root; }
+    public Button getBackButton() { return backButton; }
+}
@@ -1,5 +1,7 @@
 package ticketmachine.view;
 
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -7,34 +9,41 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.SVGPath;
+import ticketmachine.diagnostics.ShowResultsEvent;
+import ticketmachine.model.Departure;
+import ticketmachine.model.Itinerary;
+import ticketmachine.model.DeparturePeriod;
 import ticketmachine.model.Destination;
 import ticketmachine.model.TicketType;
 
-import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class ResultsView {
     
+    // Cards are a fixed height so the list never has to measure rows while scrolling
+    private static final double CARD_HEIGHT = 228;
+    
     private final VBox root;
     private final Button backButton;
     private final Label routeLabel;
     private final Label detailsLabel;
-    private final VBox resultsContainer;
-    private final List<Button> bookButtons;
+    private final ObservableList<Itinerary> itineraries;
+    private final ListView<Itinerary> resultsList;
+    private final Map<DeparturePeriod, Button> filterButtons;
     
-    private TicketType currentType;
-    private String currentOrigin;
-    private Destination currentDestination;
-    private int passengerCount;
-    private String travelClass;
+    private Consumer<Itinerary> onBook;
+    private Consumer<DeparturePeriod> onFilter;
     
     public ResultsView() {
         this.backButton = new Button();
         this.routeLabel = new Label();
         this.detailsLabel = new Label();
-        this.resultsContainer = new VBox(12);
-        this.bookButtons = new ArrayList<>();
+        this.itineraries = FXCollections.observableArrayList();
+        this.resultsList = new ListView<>(itineraries);
+        this.filterButtons = new EnumMap<>(DeparturePeriod.class);
         
         this.root = buildLayout();
     }
@@ -45,15 +54,15 @@ public class ResultsView {
         
         VBox header = buildHeader();
         HBox filterTabs = buildFilterTabs();
-        ScrollPane scrollPane = new ScrollPane(resultsContainer);
-        scrollPane.setFitToWidth(true);
-        scrollPane.getStyleClass().add("results-scroll");
-        VBox.setVgrow(scrollPane, Priority.ALWAYS);
         
-        resultsContainer.setPadding(new Insets(16, 20, 16, 20));
-        resultsContainer.getStyleClass().add("results-container");
+        resultsList.getStyleClass().add("results-list");
+        resultsList.setFixedCellSize(CARD_HEIGHT);
+        resultsList.setFocusTraversable(false);
+        resultsList.setCellFactory(list -> new ItineraryCell());
+        resultsList.setPlaceholder(new Label("No departures found"));
+        VBox.setVgrow(resultsList, Priority.ALWAYS);
         
-        layout.getChildren().addAll(header, filterTabs, scrollPane);
+        layout.getChildren().addAll(header, filterTabs, resultsList);
         return layout;
     }
     
@@ -86,152 +95,174 @@ public class ResultsView {
         tabs.getStyleClass().add("filter-tabs");
         tabs.setPadding(new Insets(12, 20, 12, 20));
         
-        Button allBtn = new Button("All Times");
-        allBtn.getStyleClass().addAll("filter-tab", "filter-tab-primary");
-        
-        Button morningBtn = new Button("Morning");
-        morningBtn.getStyleClass().add("filter-tab");
-        
-        Button eveningBtn = new Button("Evening");
-        eveningBtn.getStyleClass().add("filter-tab");
-        
-        tabs.getChildren().addAll(allBtn, morningBtn, eveningBtn);
+        for (DeparturePeriod period : DeparturePeriod.values()) {
+            Button tab = new Button(period.getDisplayName());
+            tab.getStyleClass().add("filter-tab");
+            tab.setOnAction(e -> {
+                if (onFilter != null) {
+                    onFilter.accept(period);
+                }
+            });
+            filterButtons.put(period, tab);
+            tabs.getChildren().add(tab);
+        }
+        selectFilter(DeparturePeriod.ALL);
         return tabs;
     }
     
-    public void showResults(TicketType type, String origin, Destination destination, 
-                           int passengers, String travelClass, double basePrice) {
-        this.currentType = type;
-        this.currentOrigin = origin;
-        this.currentDestination = destination;
-        this.passengerCount = passengers;
-        this.travelClass = travelClass;
-        
+    public void selectFilter(DeparturePeriod selected) {
+        for (Map.Entry<DeparturePeriod, Button> entry : filterButtons.entrySet()) {
+            List<String> styles = entry.getValue().getStyleClass();
+            styles.remove("filter-tab-primary");
+            if (entry.getKey() == selected) {
+                styles.add("filter-tab-primary");
+            }
+        }
+    }
+    
+    public void showResults(TicketType type, String origin, Destination destination, int passengers,
+                           String travelClass, DeparturePeriod period, List<Itinerary> results) {
+        ShowResultsEvent event = new ShowResultsEvent();
+        event.begin();
         routeLabel.setText(origin + " → " + destination.getName());
         detailsLabel.setText(passengers + " Adult(s) • " + travelClass + " Class");
-        
-        resultsContainer.getChildren().clear();
-        bookButtons.clear();
-        
-        double[] multipliers = { 1.0, 1.1, 0.95, 1.15 };
-        String[] times = { "08:30", "11:00", "14:30", "18:00" };
-        
-        for (int i = 0; i < 4; i++) {
-            double price = Math.round(basePrice * multipliers[i]);
-            VBox card = createResultCard(type, origin, destination, times[i], 
-                    travelClass, price, i < 2);
-            resultsContainer.getChildren().add(card);
-        }
+        selectFilter(period);
+        showItineraries(results);
+        event.complete(origin, destination.getName(), passengers, results.size());
     }
     
-    private VBox createResultCard(TicketType type, String origin, Destination destination,
-                                  String departureTime, String travelClass, double price, boolean available) {
-        VBox card = new VBox(12);
-        card.getStyleClass().add("result-card");
-        card.setPadding(new Insets(16));
-        
-        HBox topRow = new HBox();
-        topRow.setAlignment(Pos.CENTER_LEFT);
-        
-        VBox routeInfo = new VBox(4);
-        HBox.setHgrow(routeInfo, Priority.ALWAYS);
-        
-        Label codeLabel = new Label(type.getDisplayName() + " Express");
-        codeLabel.getStyleClass().add("route-code");
-        
-        Label classLabel = new Label(travelClass + " Class");
-        classLabel.getStyleClass().add("class-label");
-        
-        routeInfo.getChildren().addAll(codeLabel, classLabel);
-        
-        VBox priceBox = new VBox(2);
-        priceBox.setAlignment(Pos.CENTER_RIGHT);
-        
-        Label priceLabel = new Label(Destination.formatPKR(price));
-        priceLabel.getStyleClass().add("price-label");
-        
-        Label availLabel = new Label(available ? "Available" : "Limited Seats");
-        availLabel.getStyleClass().add(available ? "available-label" : "limited-label");
-        
-        priceBox.getChildren().addAll(priceLabel, availLabel);
-        
-        topRow.getChildren().addAll(routeInfo, priceBox);
-        
-        Separator sep = new Separator();
-        
-        HBox timeRow = new HBox();
-        timeRow.setAlignment(Pos.CENTER);
-        timeRow.setPadding(new Insets(8, 0, 8, 0));
-        
-        VBox depBox = new VBox(4);
-        depBox.setAlignment(Pos.CENTER_LEFT);
-        HBox.setHgrow(depBox, Priority.ALWAYS);
-        
-        Label depTime = new Label(departureTime);
-        depTime.getStyleClass().add("time-label");
-        
-        Label depStation = new Label(origin);
-        depStation.getStyleClass().add("station-label");
-        
-        depBox.getChildren().addAll(depTime, depStation);
-        
-        VBox durBox = new VBox(4);
-        durBox.setAlignment(Pos.CENTER);
-        durBox.setPadding(new Insets(0, 16, 0, 16));
-        
-        HBox durLine = new HBox(4);
-        durLine.setAlignment(Pos.CENTER);
-        Line line1 = new Line(0, 0, 30, 0);
-        line1.setStroke(Color.web("#E5E7EB"));
-        line1.setStrokeWidth(2);
-        SVGPath arrow = IconFactory.createArrowRightIcon();
-        IconFactory.scaleIcon(arrow, 14);
-        Line line2 = new Line(0, 0, 30, 0);
-        line2.setStroke(Color.web("#E5E7EB"));
-        line2.setStrokeWidth(2);
-        durLine.getChildren().addAll(line1, arrow, line2);
-        
-        double avgSpeed = type == TicketType.TRAIN ? 80.0 : 60.0;
-        int travelMins = (int) Math.round((destination.getDistanceKm() / avgSpeed) * 60);
-        String duration = (travelMins / 60) + "h " + (travelMins % 60) + "m";
-        Label durLabel = new Label(duration);
-        durLabel.getStyleClass().add("duration-label");
-        
-        durBox.getChildren().addAll(durLine, durLabel);
-        
-        LocalTime depT = LocalTime.parse(departureTime);
-        LocalTime arrT = depT.plusMinutes(travelMins);
-        
-        VBox arrBox = new VBox(4);
-        arrBox.setAlignment(Pos.CENTER_RIGHT);
-        HBox.setHgrow(arrBox, Priority.ALWAYS);
-        
-        Label arrTime = new Label(arrT.toString());
-        arrTime.getStyleClass().add("time-label");
-        
-        Label arrStation = new Label(destination.getName());
-        arrStation.getStyleClass().add("station-label");
-        
-        arrBox.getChildren().addAll(arrTime, arrStation);
-        
-        timeRow.getChildren().addAll(depBox, durBox, arrBox);
-        
-        Button bookBtn = new Button("Book Now");
-        bookBtn.getStyleClass().add("book-btn");
-        bookBtn.setMaxWidth(Double.MAX_VALUE);
-        bookBtn.setUserData(price * passengerCount);
-        bookButtons.add(bookBtn);
+    public void showItineraries(List<Itinerary> results) {
+        // setAll keeps the same backing list, so the cells are reused across searches
+        itineraries.setAll(results);
+        resultsList.scrollTo(0);
+    }
+    
+    private final class ItineraryCell extends ListCell<Itinerary> {
+        
+        private final VBox card = new VBox(12);
+        private final Label codeLabel = new Label();
+        private final Label classLabel = new Label();
+        private final Label priceLabel = new Label();
+        private final Label availLabel = new Label();
+        private final Label depTime = new Label();
+        private final Label depStation = new Label();
+        private final Label durLabel = new Label();
+        private final Label arrTime = new Label();
+        private final Label arrStation = new Label();
+        private final Button bookBtn = new Button("Book Now");
+        
+        ItineraryCell() {
+            getStyleClass().add("result-cell");
+            setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+            
+            card.getStyleClass().add("result-card");
+            card.setPadding(new Insets(16));
+            
+            HBox topRow = new HBox();
+            topRow.setAlignment(Pos.CENTER_LEFT);
+            
+            VBox routeInfo = new VBox(4);
+            HBox.setHgrow(routeInfo, Priority.ALWAYS);
+            codeLabel.getStyleClass().add("route-code");
+            classLabel.getStyleClass().add("class-label");
+            routeInfo.getChildren().addAll(codeLabel, classLabel);
+            
+            VBox priceBox = new VBox(2);
+            priceBox.setAlignment(Pos.CENTER_RIGHT);
+            priceLabel.getStyleClass().add("price-label");
+            priceBox.getChildren().addAll(priceLabel, availLabel);
+            
+            topRow.getChildren().addAll(routeInfo, priceBox);
+            
+            HBox timeRow = new HBox();
+            timeRow.setAlignment(Pos.CENTER);
+            timeRow.setPadding(new Insets(8, 0, 8, 0));
+            
+            VBox depBox = new VBox(4);
+            depBox.setAlignment(Pos.CENTER_LEFT);
+            HBox.setHgrow(depBox, Priority.ALWAYS);
+            depTime.getStyleClass().add("time-label");
+            depStation.getStyleClass().add("station-label");
+            depBox.getChildren().addAll(depTime, depStation);
+            
+            VBox durBox = new VBox(4);
+            durBox.setAlignment(Pos.CENTER);
+            durBox.setPadding(new Insets(0, 16, 0, 16));
+            
+            HBox durLine = new HBox(4);
+            durLine.setAlignment(Pos.CENTER);
+            Line line1 = new Line(0, 0, 30, 0);
+            line1.setStroke(Color.web("#E5E7EB"));
+            line1.setStrokeWidth(2);
+            SVGPath arrow = IconFactory.createArrowRightIcon();
+            IconFactory.scaleIcon(arrow, 14);
+            Line line2 = new Line(0, 0, 30, 0);
+            line2.setStroke(Color.web("#E5E7EB"));
+            line2.setStrokeWidth(2);
+            durLine.getChildren().addAll(line1, arrow, line2);
+            
+            durLabel.getStyleClass().add("duration-label");
+            durBox.getChildren().addAll(durLine, durLabel);
+            
+            VBox arrBox = new VBox(4);
+            arrBox.setAlignment(Pos.CENTER_RIGHT);
+            HBox.setHgrow(arrBox, Priority.ALWAYS);
+            arrTime.getStyleClass().add("time-label");
+            arrStation.getStyleClass().add("station-label");
+            arrBox.getChildren().addAll(arrTime, arrStation);
+            
+            timeRow.getChildren().addAll(depBox, durBox, arrBox);
+            
+            bookBtn.getStyleClass().add("book-btn");
+            bookBtn.setMaxWidth(Double.MAX_VALUE);
+            bookBtn.setOnAction(e -> {
+                Itinerary itinerary = getItem();
+                if (itinerary != null && onBook != null) {
+                    onBook.accept(itinerary);
+                }
+            });
+            
+            card.getChildren().addAll(topRow, new Separator(), timeRow, bookBtn);
+        }
         
-        card.getChildren().addAll(topRow, sep, timeRow, bookBtn);
-        return card;
+        @Override
+        protected void updateItem(Itinerary itinerary, boolean empty) {
+            super.updateItem(itinerary, empty);
+            if (empty || itinerary == null) {
+                setGraphic(null);
+                return;
+            }
+            Departure first = itinerary.getFirstLeg();
+            if (itinerary.isDirect()) {
+                codeLabel.setText(first.getTicketType().getDisplayName() + " Express");
+                classLabel.setText(first.getTravelClass() + " Class");
+                bookBtn.setText("Book Now");
+            } else {
+                // Each leg is its own ticket, so a connection is priced and booked one leg at a time;
+                // the whole journey's fare is only shown for information
+                codeLabel.setText(itinerary.getModes());
+                classLabel.setText(first.getTravelClass() + " Class • " + itinerary.getChangeSummary()
+                        + " • Journey " + Destination.formatPKR(itinerary.getPricePerPassenger()));
+                bookBtn.setText("Book Leg 1: " + first.getOrigin() + " → " + first.getDestination().getName());
+            }
+            priceLabel.setText(Destination.formatPKR(first.getPricePerTicket()));
+            
+            boolean limited = itinerary.hasLimitedSeats();
+            availLabel.setText(limited ? "Limited Seats" : "Available");
+            availLabel.getStyleClass().setAll("label", limited ? "limited-label" : "available-label");
+            
+            depTime.setText(first.getDepartureTime().toString());
+            depStation.setText(itinerary.getOrigin());
+            durLabel.setText(itinerary.getFormattedDuration());
+            arrTime.setText(itinerary.getLastLeg().getArrivalTime().toString());
+            arrStation.setText(itinerary.getDestination().getName());
+            setGraphic(card);
+        }
     }
     
     public VBox getRoot() { return root; }
     public Button getBackButton() { return backButton; }
-    public List<Button> getBookButtons() { return bookButtons; }
-    public TicketType getCurrentType() { return currentType; }
-    public String getCurrentOrigin() { return currentOrigin; }
-    public Destination getCurrentDestination() { return currentDestination; }
-    public int getPassengerCount() { return passengerCount; }
-    public String getTravelClass() { return travelClass; }
+    public ListView<Itinerary> getResultsList() { return resultsList; }
+    public void setOnBook(Consumer<Itinerary> onBook) { this.onBook = onBook; }
+    public void setOnFilter(Consumer<DeparturePeriod> onFilter) { this.onFilter = onFilter; }
 }
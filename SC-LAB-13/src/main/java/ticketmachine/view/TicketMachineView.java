@@ -6,19 +6,22 @@ import javafx.scene.layout.*;
 
 public class TicketMachineView {
     
-    public enum Page { HOME, RESULTS, PAYMENT, TICKET }
+    public enum Page { HOME, RESULTS, PAYMENT, TICKET, DIAGNOSTICS }
     
     private final StackPane root;
     private final HomeView homeView;
     private final ResultsView resultsView;
     private final PaymentView paymentView;
     private final TicketView ticketView;
+    private final DiagnosticsView diagnosticsView;
+    private Page currentPage;
     
     public TicketMachineView() {
         this.homeView = new HomeView();
         this.resultsView = new ResultsView();
         this.paymentView = new PaymentView();
         this.ticketView = new TicketView();
+        this.diagnosticsView = new DiagnosticsView();
         
         this.root = new StackPane();
         root.getStyleClass().add("root-container");
@@ -27,7 +30,8 @@ public class TicketMachineView {
                 homeView.getRoot(),
                 resultsView.getRoot(),
                 paymentView.getRoot(),
-                ticketView.getRoot()
+                ticketView.getRoot(),
+                diagnosticsView.getRoot()
         );
         
         showPage(Page.HOME);
@@ -38,6 +42,8 @@ public class TicketMachineView {
         resultsView.getRoot().setVisible(page == Page.RESULTS);
         paymentView.getRoot().setVisible(page == Page.PAYMENT);
         ticketView.getRoot().setVisible(page == Page.TICKET);
+        diagnosticsView.getRoot().setVisible(page == Page.DIAGNOSTICS);
+        this.currentPage = page;
     }
     
     public StackPane getRoot() { return root; }
@@ -45,4 +51,6 @@ public class TicketMachineView {
     public ResultsView getResultsView() { return resultsView; }
     public PaymentView getPaymentView() { return paymentView; }
     public TicketView getTicketView() { return ticketView; }
+    public DiagnosticsView getDiagnosticsView() { return diagnosticsView; }
+    public Page getCurrentPage() { return currentPage; }
 }
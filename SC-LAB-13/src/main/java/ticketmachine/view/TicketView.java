@@ -2,14 +2,18 @@ package ticketmachine.view;
 
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.shape.SVGPath;
 import ticketmachine.model.Destination;
 import ticketmachine.model.Ticket;
+import ticketmachine.util.BarcodeMatrix;
+import ticketmachine.util.Code128;
+import ticketmachine.util.QrCode;
 
 public class TicketView {
     
@@ -17,6 +21,10 @@ public class TicketView {
     private final Button backButton;
     private final Button downloadButton;
     private final Button newBookingButton;
+    private final Button cancelDownloadButton;
+    private final HBox downloadProgress;
+    private final ProgressBar downloadProgressBar;
+    private final Label downloadProgressLabel;
     private final VBox ticketsContainer;
     private final Label totalPassengersLabel;
     private final Label totalPriceLabel;
@@ -26,6 +34,10 @@ public class TicketView {
         this.backButton = new Button();
         this.downloadButton = new Button("Download All Tickets");
         this.newBookingButton = new Button("New Booking");
+        this.cancelDownloadButton = new Button("Cancel");
+        this.downloadProgressBar = new ProgressBar(0);
+        this.downloadProgressLabel = new Label();
+        this.downloadProgress = new HBox(10);
         this.ticketsContainer = new VBox(16);
         this.totalPassengersLabel = new Label();
         this.totalPriceLabel = new Label();
@@ -123,10 +135,31 @@ public class TicketView {
         newBookingButton.getStyleClass().add("new-booking-btn");
         newBookingButton.setMaxWidth(Double.MAX_VALUE);
         
-        buttons.getChildren().addAll(downloadButton, newBookingButton);
+        downloadProgress.getStyleClass().add("download-progress");
+        downloadProgress.setAlignment(Pos.CENTER_LEFT);
+        downloadProgressBar.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(downloadProgressBar, Priority.ALWAYS);
+        downloadProgressLabel.getStyleClass().add("summary-title-small");
+        cancelDownloadButton.getStyleClass().add("cancel-download-btn");
+        downloadProgress.getChildren().addAll(downloadProgressBar, downloadProgressLabel, cancelDownloadButton);
+        hideDownloadProgress();
+        
+        buttons.getChildren().addAll(downloadProgress, downloadButton, newBookingButton);
         return buttons;
     }
     
+    public void showDownloadProgress(int completedPages, int totalPages) {
+        downloadProgress.setVisible(true);
+        downloadProgress.setManaged(true);
+        downloadProgressBar.setProgress(totalPages > 0 ? (double) completedPages / totalPages : 0);
+        downloadProgressLabel.setText(completedPages + " / " + totalPages);
+    }
+    
+    public void hideDownloadProgress() {
+        downloadProgress.setVisible(false);
+        downloadProgress.setManaged(false);
+    }
+    
     public void showTicket(Ticket ticket, double change) {
         ticketsContainer.getChildren().clear();
         
@@ -226,9 +259,9 @@ public class TicketView {
         barcodeSection.setPadding(new Insets(12, 20, 16, 20));
         barcodeSection.setAlignment(Pos.CENTER);
         
-        HBox barcode = createBarcode();
-        Label barcodeNumber = new Label(ticket.getTicketId().replace("-", "") + 
-                String.format("P%d%05d", passengerNumber, (int)(Math.random() * 99999)));
+        String passengerCode = ticket.getPassengerCode(passengerNumber);
+        HBox barcode = createBarcode(passengerCode, ticket.getSignedPass(passengerNumber));
+        Label barcodeNumber = new Label(passengerCode);
         barcodeNumber.getStyleClass().add("barcode-number");
         
         barcodeSection.getChildren().addAll(barcode, barcodeNumber);
@@ -272,24 +305,41 @@ public class TicketView {
         return item;
     }
     
-    private HBox createBarcode() {
-        HBox barcode = new HBox(2);
+    private HBox createBarcode(String passengerCode, byte[] signedPass) {
+        HBox barcode = new HBox(16);
         barcode.setAlignment(Pos.CENTER);
         barcode.getStyleClass().add("barcode");
         
-        int[] widths = {2, 1, 3, 1, 2, 1, 1, 3, 2, 1, 3, 1, 2, 1, 1, 2, 3, 1, 2, 1, 
-                       1, 3, 1, 2, 1, 3, 2, 1, 1, 2, 1, 3, 1, 2, 1, 1, 3, 2, 1, 2};
-        
-        for (int width : widths) {
-            Rectangle bar = new Rectangle(width, 40, Color.web("#1A1A2E"));
-            barcode.getChildren().add(bar);
-        }
+        BarcodeMatrix qrMatrix = signedPass != null
+                ? QrCode.encode(signedPass, QrCode.ErrorCorrection.MEDIUM)
+                : QrCode.encode(passengerCode, QrCode.ErrorCorrection.MEDIUM);
+        Canvas qr = drawMatrix(qrMatrix, 3, 3);
+        Canvas bars = drawMatrix(Code128.encode(passengerCode), 1, 48);
         
+        barcode.getChildren().addAll(qr, bars);
         return barcode;
     }
     
+    private Canvas drawMatrix(BarcodeMatrix matrix, double moduleWidth, double moduleHeight) {
+        Canvas canvas = new Canvas(matrix.getWidth() * moduleWidth, matrix.getHeight() * moduleHeight);
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.setFill(Color.web("#1A1A2E"));
+        
+        for (int row = 0; row < matrix.getHeight(); row++) {
+            for (int column = 0; column < matrix.getWidth(); column++) {
+                int run = matrix.runLength(column, row);
+                if (run > 0) {
+                    graphics.fillRect(column * moduleWidth, row * moduleHeight, run * moduleWidth, moduleHeight);
+                    column += run;
+                }
+            }
+        }
+        return canvas;
+    }
+    
     public VBox getRoot() { return root; }
     public Button getBackButton() { return backButton; }
     public Button getDownloadButton() { return downloadButton; }
+    public Button getCancelDownloadButton() { return cancelDownloadButton; }
     public Button getNewBookingButton() { return newBookingButton; }
 }